@@ -1,20 +1,53 @@
 package io.mckenz.treemaintainer;
 
 import io.mckenz.treemaintainer.commands.TreeMaintainerCommand;
+import io.mckenz.treemaintainer.listeners.ChunkLifecycleListener;
+import io.mckenz.treemaintainer.listeners.LeafDecayListener;
+import io.mckenz.treemaintainer.listeners.RegionChangeListener;
 import io.mckenz.treemaintainer.listeners.TreeBreakListener;
+import io.mckenz.treemaintainer.listeners.TreeDamageListener;
+import io.mckenz.treemaintainer.models.DropMode;
+import io.mckenz.treemaintainer.models.EffectsPolicy;
+import io.mckenz.treemaintainer.models.ShapeProfile;
 import io.mckenz.treemaintainer.models.TreeType;
+import io.mckenz.treemaintainer.services.AdmissionService;
+import io.mckenz.treemaintainer.services.CanopyTracker;
 import io.mckenz.treemaintainer.services.CleanupService;
+import io.mckenz.treemaintainer.services.FellingRegistry;
+import io.mckenz.treemaintainer.services.LoadSheddingService;
+import io.mckenz.treemaintainer.services.PreScanService;
+import io.mckenz.treemaintainer.services.RemovalService;
 import io.mckenz.treemaintainer.services.ReplantingService;
+import io.mckenz.treemaintainer.services.SchedulerService;
 import io.mckenz.treemaintainer.services.TreeDetectionService;
+import io.mckenz.treemaintainer.services.TrunkTracker;
+import io.mckenz.treemaintainer.services.impl.AdmissionServiceImpl;
+import io.mckenz.treemaintainer.services.impl.CanopyTrackerImpl;
 import io.mckenz.treemaintainer.services.impl.CleanupServiceImpl;
+import io.mckenz.treemaintainer.services.impl.FellingRegistryImpl;
+import io.mckenz.treemaintainer.services.impl.LoadSheddingServiceImpl;
+import io.mckenz.treemaintainer.services.impl.PreScanServiceImpl;
+import io.mckenz.treemaintainer.services.impl.RemovalServiceImpl;
 import io.mckenz.treemaintainer.services.impl.ReplantingServiceImpl;
+import io.mckenz.treemaintainer.services.impl.SchedulerServiceImpl;
 import io.mckenz.treemaintainer.services.impl.TreeDetectionServiceImpl;
+import io.mckenz.treemaintainer.services.impl.TrunkTrackerImpl;
+import io.mckenz.treemaintainer.utils.MaterialClassifier;
+import io.mckenz.treemaintainer.utils.PerformanceMetrics;
+import io.mckenz.treemaintainer.utils.RegionVersions;
+import io.mckenz.treemaintainer.utils.ScanWorkspace;
 import io.mckenz.treemaintainer.utils.UpdateChecker;
 
+import org.bukkit.World;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 
 /**
@@ -28,9 +61,40 @@ public class TreeMaintainer extends JavaPlugin {
     private boolean cleanupEnabled;
     private int cleanupMaxDistance;
     private boolean cleanupLargeTrees;
+    private boolean decayInterception;
+    private int decayWindowSeconds;
     private boolean requireAxe;
     private boolean respectEfficiency;
+    private DropMode dropMode;
+    private boolean bulkLeafLoot;
+    private EffectsPolicy effectsPolicy;
+    private Map<String, EffectsPolicy> worldEffectsPolicies;
+    private int effectsSampleSize;
+    private boolean asyncDetection;
+    private boolean preScanEnabled;
+    private int workerThreads;
+    private int snapshotRadius;
+    private int scanBlockBudget;
+    private int scanTimeBudgetMicros;
+    private int removalBudgetMicros;
+    private boolean fastBreak;
+    private boolean loadSheddingEnabled;
+    private int loadNoLeafCleanupMspt;
+    private int loadDeferCleanupMspt;
+    private int loadReplantOnlyMspt;
+    private int loadPluginBudgetMillis;
+    private int loadRecoveryMargin;
+    private int loadRecoverySeconds;
+    private boolean admissionEnabled;
+    private int admissionPlayerRate;
+    private int admissionPlayerBurst;
+    private int admissionWorldRate;
+    private int admissionWorldBurst;
+    private int admissionQueueSize;
+    private boolean admissionDeferEnabled;
     private Map<String, Boolean> enabledTreeTypes;
+    private volatile MaterialClassifier materialClassifier;
+    private volatile Map<TreeType, ShapeProfile> shapeProfiles;
     
     // Update checker settings
     private boolean updateCheckerEnabled;
@@ -41,7 +105,17 @@ public class TreeMaintainer extends JavaPlugin {
     private TreeDetectionService treeDetectionService;
     private ReplantingService replantingService;
     private CleanupService cleanupService;
+    private PreScanService preScanService;
+    private RemovalService removalService;
+    private SchedulerService schedulerService;
+    private FellingRegistry fellingRegistry;
+    private CanopyTracker canopyTracker;
+    private TrunkTracker trunkTracker;
+    private LoadSheddingService loadSheddingService;
+    private AdmissionService admissionService;
     private UpdateChecker updateChecker;
+    private final PerformanceMetrics metrics = new PerformanceMetrics();
+    private final RegionVersions regionVersions = new RegionVersions();
 
     @Override
     public void onEnable() {
@@ -73,9 +147,42 @@ public class TreeMaintainer extends JavaPlugin {
 
     private void initializeServices() {
         try {
-            treeDetectionService = new TreeDetectionServiceImpl(this);
-            replantingService = new ReplantingServiceImpl(this);
-            cleanupService = new CleanupServiceImpl(this, treeDetectionService);
+            metrics.registerGauge("scan.count", ScanWorkspace::getScanCount);
+            metrics.registerGauge("scan.workspace-allocations", ScanWorkspace::getAllocationCount);
+            
+            schedulerService = new SchedulerServiceImpl(this);
+            loadSheddingService = new LoadSheddingServiceImpl(this, schedulerService);
+            treeDetectionService = new TreeDetectionServiceImpl(this, regionVersions, schedulerService);
+            replantingService = new ReplantingServiceImpl(this, schedulerService);
+            removalService = new RemovalServiceImpl(this, regionVersions, schedulerService);
+            canopyTracker = new CanopyTrackerImpl(this, treeDetectionService, removalService, schedulerService, loadSheddingService);
+            cleanupService = new CleanupServiceImpl(this, treeDetectionService, removalService, schedulerService, loadSheddingService, canopyTracker);
+            preScanService = new PreScanServiceImpl(this, treeDetectionService);
+            fellingRegistry = new FellingRegistryImpl(this);
+            trunkTracker = new TrunkTrackerImpl(this, schedulerService);
+            admissionService = new AdmissionServiceImpl(this, schedulerService);
+            
+            metrics.registerGauge("scheduler.pending", schedulerService::getPendingTasks);
+            metrics.registerGauge("region.chunks", regionVersions::getTrackedChunks);
+            metrics.registerGauge("felling.active", fellingRegistry::getActiveCount);
+            metrics.registerGauge("trunk.tracked", trunkTracker::getTrackedCount);
+            metrics.registerGauge("load.level", () -> loadSheddingService.getLevel().ordinal());
+            metrics.registerGauge("load.tick-micros", () -> (long) (loadSheddingService.getTickMillis() * 1000));
+            metrics.registerGauge("load.plugin-micros", () -> (long) (loadSheddingService.getPluginMillis() * 1000));
+            metrics.registerGauge("admission.queue", admissionService::getQueuedCount);
+            metrics.registerGauge("cleanup.pending", cleanupService::getPendingCleanups);
+            metrics.registerGauge("decay.canopies", canopyTracker::getTrackedCount);
+            metrics.registerGauge("removal.queue-blocks", removalService::getQueuedBlocks);
+            metrics.registerGauge("removal.queue-plans", removalService::getQueuedPlans);
+            metrics.registerGauge("prescan.hit-rate-percent", () -> {
+                long hits = metrics.get("prescan.hit");
+                long total = hits + metrics.get("prescan.miss");
+                return total > 0 ? hits * 100 / total : 0;
+            });
+            metrics.registerGauge("break.handler-micros-avg", () -> {
+                long events = metrics.get("break.events");
+                return events > 0 ? metrics.get("break.handler-nanos") / events / 1000 : 0;
+            });
         } catch (Exception e) {
             getLogger().log(Level.SEVERE, "Error initializing services: " + e.getMessage(), e);
             throw e; // Re-throw to be caught by onEnable
@@ -84,8 +191,16 @@ public class TreeMaintainer extends JavaPlugin {
     
     private void registerListeners() {
         try {
+            // Must be registered first so block changes are recorded before trees are scanned
+            getServer().getPluginManager().registerEvents(new RegionChangeListener(regionVersions), this);
+            getServer().getPluginManager().registerEvents(new ChunkLifecycleListener(schedulerService), this);
+            getServer().getPluginManager().registerEvents(new LeafDecayListener(canopyTracker), this);
+            getServer().getPluginManager().registerEvents(
+                new TreeBreakListener(this, treeDetectionService, replantingService, cleanupService, preScanService, removalService, fellingRegistry, trunkTracker, loadSheddingService, admissionService), 
+                this
+            );
             getServer().getPluginManager().registerEvents(
-                new TreeBreakListener(this, treeDetectionService, replantingService, cleanupService), 
+                new TreeDamageListener(this, treeDetectionService, preScanService, trunkTracker, loadSheddingService), 
                 this
             );
         } catch (Exception e) {
@@ -130,10 +245,63 @@ public class TreeMaintainer extends JavaPlugin {
             cleanupEnabled = getConfig().getBoolean("cleanup.enabled", true);
             cleanupMaxDistance = getConfig().getInt("cleanup.max-distance", 10);
             cleanupLargeTrees = getConfig().getBoolean("cleanup.large-trees", true);
+            decayInterception = getConfig().getBoolean("cleanup.intercept-decay", true);
+            decayWindowSeconds = Math.max(0, getConfig().getInt("cleanup.decay-window", 60));
             
             requireAxe = getConfig().getBoolean("tools.require-axe", true);
             respectEfficiency = getConfig().getBoolean("tools.respect-efficiency", true);
             
+            // Drop Settings
+            String mode = getConfig().getString("drops.mode", "natural");
+            dropMode = DropMode.fromConfigName(mode);
+            if (dropMode == null) {
+                getLogger().warning("Invalid drop mode '" + mode + "', using 'natural'");
+                dropMode = DropMode.NATURAL;
+            }
+            bulkLeafLoot = getConfig().getBoolean("drops.bulk-leaf-loot", true);
+            
+            // Effects Settings
+            effectsPolicy = loadEffectsPolicy("effects.mode", EffectsPolicy.NONE);
+            effectsSampleSize = Math.max(1, getConfig().getInt("effects.sample-size", 16));
+            worldEffectsPolicies = new HashMap<>();
+            if (getConfig().isConfigurationSection("effects.worlds")) {
+                for (String worldName : getConfig().getConfigurationSection("effects.worlds").getKeys(false)) {
+                    worldEffectsPolicies.put(worldName, loadEffectsPolicy("effects.worlds." + worldName, effectsPolicy));
+                }
+            }
+            
+            // Performance Settings
+            asyncDetection = getConfig().getBoolean("performance.async-detection", false);
+            preScanEnabled = getConfig().getBoolean("performance.pre-scan", true);
+            workerThreads = getConfig().getInt("performance.worker-threads", 2);
+            snapshotRadius = Math.max(0, getConfig().getInt("performance.snapshot-radius", 1));
+            scanBlockBudget = Math.max(1, getConfig().getInt("performance.scan-block-budget", 4096));
+            scanTimeBudgetMicros = Math.max(1, getConfig().getInt("performance.scan-time-budget", 2000));
+            removalBudgetMicros = Math.max(1, getConfig().getInt("performance.removal-budget", 2000));
+            fastBreak = getConfig().getBoolean("performance.fast-break", false);
+            
+            // Load Shedding Settings
+            loadSheddingEnabled = getConfig().getBoolean("performance.load-shedding.enabled", true);
+            loadNoLeafCleanupMspt = getConfig().getInt("performance.load-shedding.no-leaf-cleanup-mspt", 40);
+            loadDeferCleanupMspt = Math.max(loadNoLeafCleanupMspt, getConfig().getInt("performance.load-shedding.defer-cleanup-mspt", 45));
+            loadReplantOnlyMspt = Math.max(loadDeferCleanupMspt, getConfig().getInt("performance.load-shedding.replant-only-mspt", 50));
+            loadPluginBudgetMillis = Math.max(1, getConfig().getInt("performance.load-shedding.plugin-budget", 5));
+            loadRecoveryMargin = Math.max(0, getConfig().getInt("performance.load-shedding.recovery-margin", 5));
+            loadRecoverySeconds = Math.max(1, getConfig().getInt("performance.load-shedding.recovery-seconds", 5));
+            
+            // Admission Control Settings
+            admissionEnabled = getConfig().getBoolean("performance.admission.enabled", true);
+            admissionPlayerRate = Math.max(1, getConfig().getInt("performance.admission.player-rate", 300));
+            admissionPlayerBurst = Math.max(1, getConfig().getInt("performance.admission.player-burst", 1500));
+            admissionWorldRate = Math.max(1, getConfig().getInt("performance.admission.world-rate", 1500));
+            admissionWorldBurst = Math.max(1, getConfig().getInt("performance.admission.world-burst", 6000));
+            admissionQueueSize = Math.max(0, getConfig().getInt("performance.admission.queue-size", 64));
+            String overflow = getConfig().getString("performance.admission.overflow", "defer");
+            if (!overflow.equalsIgnoreCase("defer") && !overflow.equalsIgnoreCase("drop")) {
+                getLogger().warning("Invalid admission overflow policy '" + overflow + "', using 'defer'");
+            }
+            admissionDeferEnabled = !overflow.equalsIgnoreCase("drop");
+            
             // Update Checker Settings
             updateCheckerEnabled = getConfig().getBoolean("update-checker.enabled", true);
             updateCheckerResourceId = getConfig().getInt("update-checker.resource-id", 122862);
@@ -147,6 +315,22 @@ public class TreeMaintainer extends JavaPlugin {
                 enabledTreeTypes.put(configName, getConfig().getBoolean("tree-types." + configName, defaultValue));
             }
             
+            // Rebuild the material lookup table so it reflects the enabled tree types
+            Set<TreeType> enabledTypes = EnumSet.noneOf(TreeType.class);
+            for (TreeType treeType : TreeType.values()) {
+                if (enabledTreeTypes.get(treeType.getConfigName())) {
+                    enabledTypes.add(treeType);
+                }
+            }
+            materialClassifier = MaterialClassifier.create(enabledTypes);
+            
+            // Tree Shape Settings
+            Map<TreeType, ShapeProfile> profiles = new EnumMap<>(TreeType.class);
+            for (TreeType treeType : TreeType.values()) {
+                profiles.put(treeType, loadShapeProfile(treeType));
+            }
+            shapeProfiles = Collections.unmodifiableMap(profiles);
+            
             getLogger().info("Configuration loaded successfully");
         } catch (Exception e) {
             getLogger().log(Level.SEVERE, "Error loading configuration: " + e.getMessage(), e);
@@ -154,6 +338,48 @@ public class TreeMaintainer extends JavaPlugin {
         }
     }
     
+    /**
+     * Load an effects policy, falling back to a default if it is missing or invalid
+     * @param path The config path of the policy
+     * @param defaultPolicy The policy to use if the value is missing or invalid
+     * @return The effects policy
+     */
+    private EffectsPolicy loadEffectsPolicy(String path, EffectsPolicy defaultPolicy) {
+        String name = getConfig().getString(path, defaultPolicy.getConfigName());
+        EffectsPolicy policy = EffectsPolicy.fromConfigName(name);
+        if (policy == null) {
+            getLogger().warning("Invalid effects mode '" + name + "' at " + path + ", using '" + defaultPolicy.getConfigName() + "'");
+            return defaultPolicy;
+        }
+        return policy;
+    }
+    
+    /**
+     * Load the search shape of a tree type, falling back to the built-in shape if it is missing or invalid
+     * @param treeType The tree type
+     * @return The compiled shape profile
+     */
+    private ShapeProfile loadShapeProfile(TreeType treeType) {
+        ShapeProfile defaults = ShapeProfile.defaultFor(treeType);
+        String path = "tree-shapes." + treeType.getConfigName();
+        if (!getConfig().isConfigurationSection(path)) {
+            return defaults;
+        }
+        
+        try {
+            List<String> kernel = getConfig().getStringList(path + ".kernel");
+            return ShapeProfile.compile(
+                kernel.isEmpty() ? defaults.getKernel() : kernel,
+                getConfig().getInt(path + ".max-logs-multiplier", defaults.getMaxLogsMultiplier()),
+                getConfig().getInt(path + ".min-max-logs", defaults.getMinMaxLogs()),
+                getConfig().getInt(path + ".column-height", defaults.getColumnHeight())
+            );
+        } catch (IllegalArgumentException e) {
+            getLogger().warning("Invalid tree shape for " + treeType.getConfigName() + " (" + e.getMessage() + "), using the default shape");
+            return defaults;
+        }
+    }
+    
     /**
      * Reload the plugin configuration
      */
@@ -177,7 +403,36 @@ public class TreeMaintainer extends JavaPlugin {
     @Override
     public void onDisable() {
         try {
-            // Perform any cleanup if needed
+            if (preScanService != null) {
+                preScanService.clear();
+            }
+            if (fellingRegistry != null) {
+                fellingRegistry.clear();
+            }
+            if (trunkTracker != null) {
+                trunkTracker.clear();
+            }
+            if (admissionService != null) {
+                admissionService.clear();
+            }
+            if (cleanupService != null) {
+                cleanupService.clear();
+            }
+            if (canopyTracker != null) {
+                canopyTracker.clear();
+            }
+            if (treeDetectionService != null) {
+                treeDetectionService.shutdown();
+            }
+            if (removalService != null) {
+                removalService.shutdown();
+            }
+            if (loadSheddingService != null) {
+                loadSheddingService.shutdown();
+            }
+            if (schedulerService != null) {
+                schedulerService.shutdown();
+            }
             getLogger().info("TreeMaintainer has been disabled!");
         } catch (Exception e) {
             getLogger().log(Level.SEVERE, "Error disabling TreeMaintainer: " + e.getMessage(), e);
@@ -219,6 +474,22 @@ public class TreeMaintainer extends JavaPlugin {
         return cleanupLargeTrees;
     }
 
+    /**
+     * Check whether the decay of leaves around felled trees is taken over by the plugin
+     * @return True if decay interception is enabled
+     */
+    public boolean isDecayInterceptionEnabled() {
+        return decayInterception;
+    }
+
+    /**
+     * Get how long the canopy of a felled tree is tracked after its cleanup runs
+     * @return The decay window in ticks
+     */
+    public long getDecayWindowTicks() {
+        return decayWindowSeconds * 20L;
+    }
+
     public boolean isRequireAxe() {
         return requireAxe;
     }
@@ -227,10 +498,155 @@ public class TreeMaintainer extends JavaPlugin {
         return respectEfficiency;
     }
 
+    public boolean isAsyncDetection() {
+        return asyncDetection;
+    }
+
+    public boolean isPreScanEnabled() {
+        return preScanEnabled;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public int getSnapshotRadius() {
+        return snapshotRadius;
+    }
+
+    public int getScanBlockBudget() {
+        return scanBlockBudget;
+    }
+
+    public int getScanTimeBudgetMicros() {
+        return scanTimeBudgetMicros;
+    }
+
+    public int getRemovalBudgetMicros() {
+        return removalBudgetMicros;
+    }
+
+    /**
+     * Get where the items dropped by felled trees end up
+     * @return The drop mode
+     */
+    public DropMode getDropMode() {
+        return dropMode;
+    }
+
+    /**
+     * Check whether the loot of collected leaves is rolled for all of them at once
+     * @return True if leaf loot is rolled in bulk
+     */
+    public boolean isBulkLeafLoot() {
+        return bulkLeafLoot;
+    }
+
+    /**
+     * Get which break effects felled trees show in a world
+     * @param world The world
+     * @return The effects policy of the world, or the default policy if it has none of its own
+     */
+    public EffectsPolicy getEffectsPolicy(World world) {
+        return worldEffectsPolicies.getOrDefault(world.getName(), effectsPolicy);
+    }
+
+    /**
+     * Get the most blocks of one removal that show their break effect under the sample policy
+     * @return The sample size
+     */
+    public int getEffectsSampleSize() {
+        return effectsSampleSize;
+    }
+
+    /**
+     * Check whether felled trees are removed without breaking each block naturally
+     * @return True if fast-break mode is enabled
+     */
+    public boolean isFastBreakEnabled() {
+        return fastBreak;
+    }
+
+    public boolean isLoadSheddingEnabled() {
+        return loadSheddingEnabled;
+    }
+
+    public int getLoadNoLeafCleanupMspt() {
+        return loadNoLeafCleanupMspt;
+    }
+
+    public int getLoadDeferCleanupMspt() {
+        return loadDeferCleanupMspt;
+    }
+
+    public int getLoadReplantOnlyMspt() {
+        return loadReplantOnlyMspt;
+    }
+
+    public int getLoadPluginBudgetMillis() {
+        return loadPluginBudgetMillis;
+    }
+
+    public int getLoadRecoveryMargin() {
+        return loadRecoveryMargin;
+    }
+
+    public int getLoadRecoverySeconds() {
+        return loadRecoverySeconds;
+    }
+
+    public boolean isAdmissionEnabled() {
+        return admissionEnabled;
+    }
+
+    public int getAdmissionPlayerRate() {
+        return admissionPlayerRate;
+    }
+
+    public int getAdmissionPlayerBurst() {
+        return admissionPlayerBurst;
+    }
+
+    public int getAdmissionWorldRate() {
+        return admissionWorldRate;
+    }
+
+    public int getAdmissionWorldBurst() {
+        return admissionWorldBurst;
+    }
+
+    public int getAdmissionQueueSize() {
+        return admissionQueueSize;
+    }
+
+    /**
+     * Check whether work over the admission limits is queued rather than dropped
+     * @return True if the overflow policy is "defer"
+     */
+    public boolean isAdmissionDeferEnabled() {
+        return admissionDeferEnabled;
+    }
+
     public boolean isTreeTypeEnabled(String treeType) {
         return enabledTreeTypes.getOrDefault(treeType, false);
     }
     
+    /**
+     * Get the compiled search shape of each tree type
+     * @return The shape profiles, which are replaced whenever the config is reloaded
+     */
+    public Map<TreeType, ShapeProfile> getShapeProfiles() {
+        return shapeProfiles;
+    }
+    
+    /**
+     * Get the material lookup table built from the current configuration
+     * @return The material classifier
+     */
+    public MaterialClassifier getMaterialClassifier() {
+        return materialClassifier;
+    }
+    
     public boolean isUpdateCheckerEnabled() {
         return updateCheckerEnabled;
     }
@@ -252,7 +668,39 @@ public class TreeMaintainer extends JavaPlugin {
         return cleanupService;
     }
     
+    public RemovalService getRemovalService() {
+        return removalService;
+    }
+    
+    public SchedulerService getSchedulerService() {
+        return schedulerService;
+    }
+    
+    public FellingRegistry getFellingRegistry() {
+        return fellingRegistry;
+    }
+    
+    public CanopyTracker getCanopyTracker() {
+        return canopyTracker;
+    }
+    
+    public TrunkTracker getTrunkTracker() {
+        return trunkTracker;
+    }
+    
+    public LoadSheddingService getLoadSheddingService() {
+        return loadSheddingService;
+    }
+    
+    public AdmissionService getAdmissionService() {
+        return admissionService;
+    }
+    
     public UpdateChecker getUpdateChecker() {
         return updateChecker;
     }
+    
+    public PerformanceMetrics getMetrics() {
+        return metrics;
+    }
 } 
\ No newline at end of file
@@ -1,6 +1,9 @@
 package io.mckenz.treemaintainer.commands;
 
 import io.mckenz.treemaintainer.TreeMaintainer;
+import io.mckenz.treemaintainer.models.LoadLevel;
+import io.mckenz.treemaintainer.services.LoadSheddingService;
+import io.mckenz.treemaintainer.services.SchedulerService;
 import io.mckenz.treemaintainer.utils.UpdateChecker;
 
 import org.bukkit.ChatColor;
@@ -12,6 +15,7 @@ import org.bukkit.command.TabCompleter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
@@ -21,7 +25,7 @@ import java.util.stream.Collectors;
 public class TreeMaintainerCommand implements CommandExecutor, TabCompleter {
 
     private final TreeMaintainer plugin;
-    private static final List<String> SUBCOMMANDS = Arrays.asList("reload", "enable", "disable", "info", "update");
+    private static final List<String> SUBCOMMANDS = Arrays.asList("reload", "enable", "disable", "info", "stats", "update");
 
     public TreeMaintainerCommand(TreeMaintainer plugin) {
         this.plugin = plugin;
@@ -92,6 +96,14 @@ public class TreeMaintainerCommand implements CommandExecutor, TabCompleter {
                     sendInfo(sender);
                     break;
                     
+                case "stats":
+                    if (!sender.hasPermission("treemaintainer.info")) {
+                        sender.sendMessage(ChatColor.RED + "You don't have permission to view plugin statistics.");
+                        return true;
+                    }
+                    sendStats(sender);
+                    break;
+                    
                 case "update":
                     if (!sender.hasPermission("treemaintainer.update")) {
                         sender.sendMessage(ChatColor.RED + "You don't have permission to check for updates.");
@@ -119,6 +131,7 @@ public class TreeMaintainerCommand implements CommandExecutor, TabCompleter {
             sender.sendMessage(ChatColor.YELLOW + "/treemaintainer enable " + ChatColor.WHITE + "- Enable the plugin");
             sender.sendMessage(ChatColor.YELLOW + "/treemaintainer disable " + ChatColor.WHITE + "- Disable the plugin");
             sender.sendMessage(ChatColor.YELLOW + "/treemaintainer info " + ChatColor.WHITE + "- Show plugin information");
+            sender.sendMessage(ChatColor.YELLOW + "/treemaintainer stats " + ChatColor.WHITE + "- Show performance statistics");
             sender.sendMessage(ChatColor.YELLOW + "/treemaintainer update " + ChatColor.WHITE + "- Check for updates");
         } catch (Exception e) {
             plugin.getLogger().log(Level.WARNING, "Error sending help message: " + e.getMessage(), e);
@@ -134,6 +147,24 @@ public class TreeMaintainerCommand implements CommandExecutor, TabCompleter {
             sender.sendMessage(ChatColor.YELLOW + "Cleanup: " + (plugin.isCleanupEnabled() ? ChatColor.GREEN + "Enabled" : ChatColor.RED + "Disabled"));
             sender.sendMessage(ChatColor.YELLOW + "Require Axe: " + (plugin.isRequireAxe() ? ChatColor.GREEN + "Yes" : ChatColor.RED + "No"));
             
+            LoadSheddingService loadSheddingService = plugin.getLoadSheddingService();
+            if (loadSheddingService != null) {
+                LoadLevel level = loadSheddingService.getLevel();
+                sender.sendMessage(ChatColor.YELLOW + "Load Level: " + (level == LoadLevel.FULL ? ChatColor.GREEN : ChatColor.RED) + level.getDisplayName()
+                        + ChatColor.GRAY + String.format(" (%.1f ms per tick)", loadSheddingService.getTickMillis()));
+            }
+            
+            SchedulerService schedulerService = plugin.getSchedulerService();
+            if (schedulerService != null) {
+                long retainedBytes = schedulerService.getEstimatedRetainedBytes()
+                        + plugin.getCleanupService().getEstimatedRetainedBytes()
+                        + plugin.getCanopyTracker().getEstimatedRetainedBytes()
+                        + plugin.getRemovalService().getEstimatedRetainedBytes();
+                sender.sendMessage(ChatColor.YELLOW + "Pending Tasks: " + ChatColor.WHITE + schedulerService.getPendingTasks()
+                        + ChatColor.GRAY + " (" + schedulerService.getHeldTasks() + " waiting for chunks, "
+                        + plugin.getRemovalService().getQueuedBlocks() + " blocks queued, ~" + Math.max(1, retainedBytes / 1024) + " KB retained)");
+            }
+            
             // Show update information if available
             if (plugin.isUpdateCheckerEnabled() && plugin.getUpdateChecker() != null) {
                 UpdateChecker updateChecker = plugin.getUpdateChecker();
@@ -147,6 +178,17 @@ public class TreeMaintainerCommand implements CommandExecutor, TabCompleter {
         }
     }
     
+    private void sendStats(CommandSender sender) {
+        try {
+            sender.sendMessage(ChatColor.GREEN + "=== TreeMaintainer Stats ===");
+            for (Map.Entry<String, Long> entry : plugin.getMetrics().snapshot().entrySet()) {
+                sender.sendMessage(ChatColor.YELLOW + entry.getKey() + ": " + ChatColor.WHITE + entry.getValue());
+            }
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "Error sending stats message: " + e.getMessage(), e);
+        }
+    }
+    
     private void checkForUpdates(CommandSender sender) {
         try {
             if (!plugin.isUpdateCheckerEnabled()) {
@@ -211,6 +253,7 @@ public class TreeMaintainerCommand implements CommandExecutor, TabCompleter {
                 case "disable":
                     return sender.hasPermission("treemaintainer.toggle");
                 case "info":
+                case "stats":
                     return sender.hasPermission("treemaintainer.info");
                 case "update":
                     return sender.hasPermission("treemaintainer.update");
@@ -16,14 +16,52 @@ public class ConfigKeys {
     public static final String CLEANUP_ENABLED = "cleanup.enabled";
     public static final String CLEANUP_MAX_DISTANCE = "cleanup.max-distance";
     public static final String CLEANUP_LARGE_TREES = "cleanup.large-trees";
+    public static final String CLEANUP_INTERCEPT_DECAY = "cleanup.intercept-decay";
+    public static final String CLEANUP_DECAY_WINDOW = "cleanup.decay-window";
     
     // Tool settings
     public static final String TOOLS_REQUIRE_AXE = "tools.require-axe";
     public static final String TOOLS_RESPECT_EFFICIENCY = "tools.respect-efficiency";
     
+    // Drop settings
+    public static final String DROPS_MODE = "drops.mode";
+    public static final String DROPS_BULK_LEAF_LOOT = "drops.bulk-leaf-loot";
+    
+    // Effects settings
+    public static final String EFFECTS_MODE = "effects.mode";
+    public static final String EFFECTS_SAMPLE_SIZE = "effects.sample-size";
+    public static final String EFFECTS_WORLDS_PREFIX = "effects.worlds.";
+    
+    // Performance settings
+    public static final String PERFORMANCE_ASYNC_DETECTION = "performance.async-detection";
+    public static final String PERFORMANCE_WORKER_THREADS = "performance.worker-threads";
+    public static final String PERFORMANCE_SNAPSHOT_RADIUS = "performance.snapshot-radius";
+    public static final String PERFORMANCE_PRE_SCAN = "performance.pre-scan";
+    public static final String PERFORMANCE_SCAN_BLOCK_BUDGET = "performance.scan-block-budget";
+    public static final String PERFORMANCE_SCAN_TIME_BUDGET = "performance.scan-time-budget";
+    public static final String PERFORMANCE_REMOVAL_BUDGET = "performance.removal-budget";
+    public static final String PERFORMANCE_FAST_BREAK = "performance.fast-break";
+    public static final String PERFORMANCE_LOAD_SHEDDING_ENABLED = "performance.load-shedding.enabled";
+    public static final String PERFORMANCE_LOAD_SHEDDING_NO_LEAF_CLEANUP_MSPT = "performance.load-shedding.no-leaf-cleanup-mspt";
+    public static final String PERFORMANCE_LOAD_SHEDDING_DEFER_CLEANUP_MSPT = "performance.load-shedding.defer-cleanup-mspt";
+    public static final String PERFORMANCE_LOAD_SHEDDING_REPLANT_ONLY_MSPT = "performance.load-shedding.replant-only-mspt";
+    public static final String PERFORMANCE_LOAD_SHEDDING_PLUGIN_BUDGET = "performance.load-shedding.plugin-budget";
+    public static final String PERFORMANCE_LOAD_SHEDDING_RECOVERY_MARGIN = "performance.load-shedding.recovery-margin";
+    public static final String PERFORMANCE_LOAD_SHEDDING_RECOVERY_SECONDS = "performance.load-shedding.recovery-seconds";
+    public static final String PERFORMANCE_ADMISSION_ENABLED = "performance.admission.enabled";
+    public static final String PERFORMANCE_ADMISSION_PLAYER_RATE = "performance.admission.player-rate";
+    public static final String PERFORMANCE_ADMISSION_PLAYER_BURST = "performance.admission.player-burst";
+    public static final String PERFORMANCE_ADMISSION_WORLD_RATE = "performance.admission.world-rate";
+    public static final String PERFORMANCE_ADMISSION_WORLD_BURST = "performance.admission.world-burst";
+    public static final String PERFORMANCE_ADMISSION_OVERFLOW = "performance.admission.overflow";
+    public static final String PERFORMANCE_ADMISSION_QUEUE_SIZE = "performance.admission.queue-size";
+    
     // Tree type settings
     public static final String TREE_TYPES_PREFIX = "tree-types.";
     
+    // Tree shape settings
+    public static final String TREE_SHAPES_PREFIX = "tree-shapes.";
+    
     // Update checker settings
     public static final String UPDATE_CHECKER_ENABLED = "update-checker.enabled";
     public static final String UPDATE_CHECKER_RESOURCE_ID = "update-checker.resource-id";
@@ -0,0 +1,41 @@
+package io.mckenz.treemaintainer.listeners;
+
+import io.mckenz.treemaintainer.services.SchedulerService;
+
+import org.bukkit.Chunk;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * Listener that moves scheduled tree work along with the chunks and worlds it belongs to,
+ * so waiting tasks are held while their chunk is unloaded and never outlive their world.
+ */
+public class ChunkLifecycleListener implements Listener {
+
+    private final SchedulerService schedulerService;
+
+    public ChunkLifecycleListener(SchedulerService schedulerService) {
+        this.schedulerService = schedulerService;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        Chunk chunk = event.getChunk();
+        schedulerService.chunkLoaded(event.getWorld().getUID(), chunk.getX(), chunk.getZ());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        Chunk chunk = event.getChunk();
+        schedulerService.chunkUnloaded(event.getWorld().getUID(), chunk.getX(), chunk.getZ());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        schedulerService.worldUnloaded(event.getWorld().getUID());
+    }
+}
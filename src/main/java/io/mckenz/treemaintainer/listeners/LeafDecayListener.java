@@ -0,0 +1,34 @@
+package io.mckenz.treemaintainer.listeners;
+
+import io.mckenz.treemaintainer.services.CanopyTracker;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.LeavesDecayEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+/**
+ * Listener that hands the decay of leaves around felled trees to the canopy tracker, so the
+ * first leaf to decay brings the rest of its canopy down with it instead of one event at a time.
+ */
+public class LeafDecayListener implements Listener {
+
+    private final CanopyTracker canopyTracker;
+
+    public LeafDecayListener(CanopyTracker canopyTracker) {
+        this.canopyTracker = canopyTracker;
+    }
+
+    @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
+    public void onLeavesDecay(LeavesDecayEvent event) {
+        if (canopyTracker.interceptDecay(event.getBlock())) {
+            event.setCancelled(true);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        canopyTracker.clearWorld(event.getWorld().getUID());
+    }
+}
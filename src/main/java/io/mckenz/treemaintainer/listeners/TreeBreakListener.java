@@ -1,22 +1,39 @@
 package io.mckenz.treemaintainer.listeners;
 
 import io.mckenz.treemaintainer.TreeMaintainer;
+import io.mckenz.treemaintainer.models.DropMode;
+import io.mckenz.treemaintainer.models.FellingOperation;
+import io.mckenz.treemaintainer.models.RemovalPlan;
+import io.mckenz.treemaintainer.models.TreeScan;
 import io.mckenz.treemaintainer.models.TreeType;
+import io.mckenz.treemaintainer.services.AdmissionService;
 import io.mckenz.treemaintainer.services.CleanupService;
+import io.mckenz.treemaintainer.services.FellingRegistry;
+import io.mckenz.treemaintainer.services.LoadSheddingService;
+import io.mckenz.treemaintainer.services.PreScanService;
+import io.mckenz.treemaintainer.services.RemovalService;
 import io.mckenz.treemaintainer.services.ReplantingService;
 import io.mckenz.treemaintainer.services.TreeDetectionService;
+import io.mckenz.treemaintainer.services.TrunkTracker;
+import io.mckenz.treemaintainer.utils.BlockKeys;
+import io.mckenz.treemaintainer.utils.DropCollector;
+import io.mckenz.treemaintainer.utils.MaterialClassifier;
 import io.mckenz.treemaintainer.utils.ToolUtils;
+import io.mckenz.treemaintainer.world.LiveWorldView;
 
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.inventory.ItemStack;
 
-import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 
 /**
@@ -24,24 +41,46 @@ import java.util.logging.Level;
  */
 public class TreeBreakListener implements Listener {
 
+    // Upper bound on felling rounds, in case connected logs keep turning up
+    private static final int MAX_FELLING_ROUNDS = 8;
+
     private final TreeMaintainer plugin;
     private final TreeDetectionService treeDetectionService;
     private final ReplantingService replantingService;
     private final CleanupService cleanupService;
+    private final PreScanService preScanService;
+    private final RemovalService removalService;
+    private final FellingRegistry fellingRegistry;
+    private final TrunkTracker trunkTracker;
+    private final LoadSheddingService loadSheddingService;
+    private final AdmissionService admissionService;
 
     public TreeBreakListener(
             TreeMaintainer plugin,
             TreeDetectionService treeDetectionService,
             ReplantingService replantingService,
-            CleanupService cleanupService) {
+            CleanupService cleanupService,
+            PreScanService preScanService,
+            RemovalService removalService,
+            FellingRegistry fellingRegistry,
+            TrunkTracker trunkTracker,
+            LoadSheddingService loadSheddingService,
+            AdmissionService admissionService) {
         this.plugin = plugin;
         this.treeDetectionService = treeDetectionService;
         this.replantingService = replantingService;
         this.cleanupService = cleanupService;
+        this.preScanService = preScanService;
+        this.removalService = removalService;
+        this.fellingRegistry = fellingRegistry;
+        this.trunkTracker = trunkTracker;
+        this.loadSheddingService = loadSheddingService;
+        this.admissionService = admissionService;
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onBlockBreak(BlockBreakEvent event) {
+        long start = System.nanoTime();
         try {
             // Check if plugin is enabled
             if (!plugin.isPluginEnabled()) {
@@ -51,13 +90,14 @@ public class TreeBreakListener implements Listener {
             Block block = event.getBlock();
             
             // Check if the broken block is a log
-            TreeType treeType = TreeType.fromLogMaterial(block.getType());
+            MaterialClassifier classifier = plugin.getMaterialClassifier();
+            TreeType treeType = classifier.getLogType(block.getType());
             if (treeType == null) {
                 return;
             }
 
             // Check if this tree type is enabled
-            if (!plugin.isTreeTypeEnabled(treeType.getConfigName())) {
+            if (!classifier.isEnabled(treeType)) {
                 plugin.debug(treeType.getConfigName() + " tree type is disabled - skipping processing");
                 return;
             }
@@ -74,7 +114,9 @@ public class TreeBreakListener implements Listener {
             plugin.debug("Log block broken with " + tool.getType() + " at " + block.getLocation());
 
             // Check if the block is part of a tree
-            if (!treeDetectionService.isTree(block)) {
+            LiveWorldView view = new LiveWorldView(block.getWorld());
+            long origin = BlockKeys.of(block);
+            if (!treeDetectionService.isTree(view, origin)) {
                 plugin.debug("Block is not part of a tree - skipping processing");
                 return;
             }
@@ -95,143 +137,208 @@ public class TreeBreakListener implements Listener {
                 replantingService.scheduleReplanting(plantLocation, logType, delay);
             }
 
-            // Special handling for 2x2 trees - only break connected logs if this isn't a 2x2 tree
-            // or if it's the last corner of a 2x2 tree
-            boolean is2x2Tree = treeType.canGrowAs2x2();
-            
             // Immediately break all connected logs if cleanup is enabled
             if (plugin.isCleanupEnabled()) {
-                // For 2x2 trees, we need to check if there are other corners still standing
-                if (is2x2Tree) {
-                    // Get all connected logs before they're broken
-                    Set<Block> connectedLogs = treeDetectionService.findConnectedLogs(block, plugin.getCleanupMaxDistance());
-                    
-                    // Count how many logs are at the same Y level as the broken block (potential 2x2 trunk blocks)
-                    int sameYLevelLogs = 0;
-                    for (Block log : connectedLogs) {
-                        if (log.getY() == block.getY() && TreeType.fromLogMaterial(log.getType()) == treeType) {
-                            sameYLevelLogs++;
-                        }
-                    }
-                    
-                    plugin.debug("Found " + sameYLevelLogs + " logs at same Y level for potential 2x2 " + treeType.getConfigName() + " tree");
-                    
-                    // If this is the last corner (or there are no other corners at this Y level), break all connected logs
-                    if (sameYLevelLogs <= 1) {
-                        plugin.debug("This appears to be the last corner of a 2x2 tree, breaking all connected logs");
-                        // Break all logs except the one that was just broken
-                        for (Block log : connectedLogs) {
-                            if (!log.getLocation().equals(block.getLocation())) {
-                                log.breakNaturally(tool);
-                            }
-                        }
-                        
-                        // For jungle trees, do additional passes to catch any missed logs
-                        if (treeType == TreeType.JUNGLE && plugin.isCleanupLargeTrees()) {
-                            plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
-                                try {
-                                    // Find any remaining logs that might have been missed
-                                    Set<Block> remainingLogs = treeDetectionService.findConnectedLogs(block, plugin.getCleanupMaxDistance());
-                                    if (!remainingLogs.isEmpty()) {
-                                        plugin.debug("Second pass found " + remainingLogs.size() + " additional jungle logs to break");
-                                        for (Block log : remainingLogs) {
-                                            log.breakNaturally(tool);
-                                        }
-                                        
-                                        // Do a third pass for jungle trees to be extra thorough
-                                        plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
-                                            try {
-                                                Set<Block> finalLogs = treeDetectionService.findConnectedLogs(block, plugin.getCleanupMaxDistance());
-                                                if (!finalLogs.isEmpty()) {
-                                                    plugin.debug("Third pass found " + finalLogs.size() + " additional jungle logs to break");
-                                                    for (Block log : finalLogs) {
-                                                        log.breakNaturally(tool);
-                                                    }
-                                                }
-                                            } catch (Exception e) {
-                                                plugin.getLogger().log(Level.WARNING, "Error in third pass log breaking: " + e.getMessage(), e);
-                                            }
-                                        }, 4L); // 4 ticks after second pass
-                                    }
-                                } catch (Exception e) {
-                                    plugin.getLogger().log(Level.WARNING, "Error in second pass log breaking: " + e.getMessage(), e);
-                                }
-                            }, 2L); // Short delay (2 ticks) to let the first pass complete
-                        }
-                        
-                        // Schedule cleanup for any remaining floating parts
-                        plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
-                            try {
-                                cleanupService.cleanupFloatingTreeParts(block);
-                            } catch (Exception e) {
-                                plugin.getLogger().log(Level.WARNING, "Error in scheduled cleanup task: " + e.getMessage(), e);
+                int maxDistance = plugin.getCleanupMaxDistance();
+                UUID playerId = event.getPlayer().getUniqueId();
+                UUID worldId = block.getWorld().getUID();
+                
+                // Under heavy load only the replanting above is done
+                if (!loadSheddingService.getLevel().allowsFelling()) {
+                    plugin.debug("Server is under heavy load - not felling the tree");
+                    plugin.getMetrics().increment("load.fellings-shed");
+                    preScanService.discardPreScan(playerId);
+                    return;
+                }
+                
+                // A log of a tree that is already being felled is removed by that operation
+                if (fellingRegistry.find(worldId, origin, treeType) != null) {
+                    plugin.debug("Log belongs to a tree that is already being felled - joining that operation");
+                    plugin.getMetrics().increment("felling.joined");
+                    preScanService.discardPreScan(playerId);
+                    return;
+                }
+                
+                // Special handling for 2x2 trees - only break connected logs if this isn't a 2x2 tree
+                // or if it's the last corner of a 2x2 tree, which is known without scanning the tree
+                if (treeType.canGrowAs2x2() && trunkTracker.breakCorner(view, worldId, origin, treeType)) {
+                    plugin.debug("This is not the last corner of a 2x2 tree, only replanting this corner");
+                    plugin.getMetrics().increment("trunk.scans-avoided");
+                    preScanService.discardPreScan(playerId);
+                    return;
+                }
+                FellingOperation operation = fellingRegistry.begin(worldId, treeType, origin, playerId);
+                CompletableFuture<TreeScan> preScan = preScanService.takePreScan(event.getPlayer(), block);
+                
+                if (preScan != null) {
+                    // The tree was scanned while the player was chopping; only revalidate it against this break
+                    ItemStack toolSnapshot = tool.clone();
+                    preScan.thenAccept(scan -> {
+                            TreeScan current = scan;
+                            if (!treeDetectionService.isCurrent(scan, 1)) {
+                                plugin.getMetrics().increment("prescan.stale");
+                                current = treeDetectionService.refreshScan(scan, maxDistance);
                             }
-                        }, delay + 5);
-                    } else {
-                        plugin.debug("This is not the last corner of a 2x2 tree, only replanting this corner");
-                        // This is not the last corner, so we only replant this specific corner
-                        // No need to break other logs or clean up
-                    }
+                            handleFelling(treeDetectionService.planRemoval(view, current), toolSnapshot, operation, delay);
+                        })
+                        .exceptionally(e -> {
+                            plugin.getLogger().log(Level.WARNING, "Error in tree pre-scan: " + e.getMessage(), e);
+                            endOperation(operation);
+                            return null;
+                        });
+                } else if (plugin.isAsyncDetection()) {
+                    // Scan snapshots of the surrounding chunks on a worker thread, then apply the plan on the main thread
+                    ItemStack toolSnapshot = tool.clone();
+                    treeDetectionService.planFellingAsync(block.getWorld(), origin, maxDistance)
+                        .thenAcceptAsync(plan -> handleFelling(plan, toolSnapshot, operation, delay),
+                                plugin.getServer().getScheduler().getMainThreadExecutor(plugin))
+                        .exceptionally(e -> {
+                            plugin.getLogger().log(Level.WARNING, "Error in asynchronous tree detection: " + e.getMessage(), e);
+                            endOperation(operation);
+                            return null;
+                        });
                 } else {
-                    // Regular tree handling (not a 2x2 tree)
-                    // Get all connected logs before they're broken
-                    Set<Block> connectedLogs = treeDetectionService.findConnectedLogs(block, plugin.getCleanupMaxDistance());
-                    plugin.debug("Found " + connectedLogs.size() + " connected logs to break");
-                    
-                    // Break all logs except the one that was just broken
-                    for (Block log : connectedLogs) {
-                        if (!log.getLocation().equals(block.getLocation())) {
-                            log.breakNaturally(tool);
-                        }
-                    }
-                    
-                    // For oak and jungle trees, do a second pass after a short delay to catch any missed logs
-                    if ((treeType == TreeType.OAK || treeType == TreeType.JUNGLE) && plugin.isCleanupLargeTrees()) {
-                        plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
-                            try {
-                                // Find any remaining logs that might have been missed
-                                Set<Block> remainingLogs = treeDetectionService.findConnectedLogs(block, plugin.getCleanupMaxDistance());
-                                if (!remainingLogs.isEmpty()) {
-                                    plugin.debug("Second pass found " + remainingLogs.size() + " additional " + treeType.getConfigName() + " logs to break");
-                                    for (Block log : remainingLogs) {
-                                        log.breakNaturally(tool);
-                                    }
-                                    
-                                    // For jungle trees, do a third pass to be extra thorough
-                                    if (treeType == TreeType.JUNGLE) {
-                                        plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
-                                            try {
-                                                Set<Block> finalLogs = treeDetectionService.findConnectedLogs(block, plugin.getCleanupMaxDistance());
-                                                if (!finalLogs.isEmpty()) {
-                                                    plugin.debug("Third pass found " + finalLogs.size() + " additional jungle logs to break");
-                                                    for (Block log : finalLogs) {
-                                                        log.breakNaturally(tool);
-                                                    }
-                                                }
-                                            } catch (Exception e) {
-                                                plugin.getLogger().log(Level.WARNING, "Error in third pass log breaking: " + e.getMessage(), e);
-                                            }
-                                        }, 4L); // 4 ticks after second pass
-                                    }
-                                }
-                            } catch (Exception e) {
-                                plugin.getLogger().log(Level.WARNING, "Error in second pass log breaking: " + e.getMessage(), e);
-                            }
-                        }, 2L); // Short delay (2 ticks) to let the first pass complete
-                    }
-                    
-                    // Schedule cleanup for any remaining floating parts
-                    plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
-                        try {
-                            cleanupService.cleanupFloatingTreeParts(block);
-                        } catch (Exception e) {
-                            plugin.getLogger().log(Level.WARNING, "Error in scheduled cleanup task: " + e.getMessage(), e);
-                        }
-                    }, delay + 5);
+                    // Scan the tree once before any logs are broken; every later stage works from this scan.
+                    // Large trees are scanned over several ticks, so the tool may have changed by the time it completes
+                    ItemStack toolSnapshot = tool.clone();
+                    treeDetectionService.scanTreeIncrementally(view, worldId, origin, maxDistance)
+                        .thenAccept(scan -> handleFelling(treeDetectionService.planRemoval(view, scan), toolSnapshot, operation, delay))
+                        .exceptionally(e -> {
+                            plugin.getLogger().log(Level.WARNING, "Error in tree detection: " + e.getMessage(), e);
+                            endOperation(operation);
+                            return null;
+                        });
                 }
             }
         } catch (Exception e) {
             plugin.getLogger().log(Level.WARNING, "Error processing block break event: " + e.getMessage(), e);
+        } finally {
+            plugin.getMetrics().increment("break.events");
+            plugin.getMetrics().add("break.handler-nanos", System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Fell a scanned tree
+     * @param plan The plan to remove the tree's logs, made before the first log was broken
+     * @param tool The tool used to break the tree
+     * @param operation The felling operation started by the break
+     * @param delay The delay in ticks before cleaning up floating parts
+     */
+    private void handleFelling(RemovalPlan plan, ItemStack tool, FellingOperation operation, int delay) {
+        try {
+            TreeScan scan = plan.getScan();
+            TreeType treeType = scan.getTreeType();
+            if (treeType == null) {
+                endOperation(operation);
+                return;
+            }
+            
+            plugin.debug("Found " + scan.getLogCount() + " connected logs to break");
+            
+            // The cost of a tree is the blocks it takes to fell and clean up, so big trees use up more of the player's share
+            int cost = plan.size() + scan.getLeafCount();
+            admissionService.submit(operation.getPlayerId(), scan.getWorldId(), cost,
+                    () -> fellTree(plan, tool, operation, delay),
+                    () -> endOperation(operation));
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "Error felling tree: " + e.getMessage(), e);
+            endOperation(operation);
+        }
+    }
+
+    /**
+     * Break every log of a scanned tree, then keep felling the logs still connected to it
+     * until none remain, and schedule the cleanup
+     * @param plan The plan to remove the tree's logs
+     * @param tool The tool used to break the tree
+     * @param operation The felling operation started by the break
+     * @param delay The delay in ticks before cleaning up floating parts
+     */
+    private void fellTree(RemovalPlan plan, ItemStack tool, FellingOperation operation, int delay) {
+        fellRound(plan, plan.getScan(), tool, operation, delay, 1);
+    }
+
+    /**
+     * Break the logs of one felling round. Once they are gone, logs of the same tree type
+     * still connected to them are scanned and felled in the next round, so a tree is felled
+     * completely even when it is larger than a single scan allows.
+     * @param plan The plan to remove the logs of this round
+     * @param felled The scan covering the tree felled so far, used for the cleanup
+     * @param tool The tool used to break the tree
+     * @param operation The felling operation started by the break
+     * @param delay The delay in ticks before cleaning up floating parts
+     * @param round The number of this round, starting at 1
+     */
+    private void fellRound(RemovalPlan plan, TreeScan felled, ItemStack tool, FellingOperation operation, int delay, int round) {
+        TreeScan scan = plan.getScan();
+        // Later breaks of these logs join this operation instead of scanning the tree again
+        operation.addScan(scan);
+        
+        // Large trees are broken over several ticks; the next round starts as soon as this one is done
+        // Outside natural drops, every round adds to the operation's drops, which are handed out once it ends
+        DropCollector drops = plugin.getDropMode() != DropMode.NATURAL ? operation.getDrops() : null;
+        // A complete scan of an unchanged region already covers every connected log. Checked before
+        // the removal, since breaking the logs changes the region as well
+        boolean complete = !scan.isTruncated() && treeDetectionService.isCurrent(scan, 1);
+        removalService.submit(plan, tool, operation.getPlayerId(), drops).thenAccept(removed -> {
+            if (round > 1) {
+                plugin.debug("Felling round " + round + " broke " + removed + " additional " + scan.getTreeType().getConfigName() + " logs");
+            }
+            
+            if (complete || !plugin.isCleanupLargeTrees() || round >= MAX_FELLING_ROUNDS) {
+                scheduleCleanup(felled, operation, delay);
+                return;
+            }
+            
+            treeDetectionService.scanRemainingLogs(scan, plugin.getCleanupMaxDistance()).thenAccept(remaining -> {
+                World world = plugin.getServer().getWorld(scan.getWorldId());
+                if (remaining.isEmpty() || world == null) {
+                    scheduleCleanup(felled, operation, delay);
+                    return;
+                }
+                plugin.getMetrics().increment("felling.extra-rounds");
+                // The remaining scan keeps the canopy found so far, so the cleanup covers the whole tree
+                fellRound(treeDetectionService.planRemoval(new LiveWorldView(world), remaining), remaining, tool, operation, delay, round + 1);
+            }).exceptionally(e -> {
+                plugin.getLogger().log(Level.WARNING, "Error scanning remaining logs: " + e.getMessage(), e);
+                endOperation(operation);
+                return null;
+            });
+        }).exceptionally(e -> {
+            plugin.getLogger().log(Level.WARNING, "Error breaking tree logs: " + e.getMessage(), e);
+            endOperation(operation);
+            return null;
+        });
+    }
+
+    /**
+     * Finish a felling operation and schedule cleanup for any remaining floating parts of the tree
+     * @param scan The scan of the felled tree
+     * @param operation The felling operation
+     * @param delay The delay in ticks before cleaning up floating parts
+     */
+    private void scheduleCleanup(TreeScan scan, FellingOperation operation, int delay) {
+        endOperation(operation);
+        cleanupService.scheduleCleanup(scan, delay + 5);
+    }
+
+    /**
+     * End a felling operation and hand out the drops gathered by its rounds
+     * @param operation The felling operation
+     */
+    private void endOperation(FellingOperation operation) {
+        fellingRegistry.end(operation);
+        DropCollector drops = operation.getDrops();
+        World world = plugin.getServer().getWorld(operation.getWorldId());
+        if (drops.isEmpty() || world == null) {
+            return;
         }
+        
+        Player player = plugin.getDropMode() == DropMode.INVENTORY ? plugin.getServer().getPlayer(operation.getPlayerId()) : null;
+        int items = drops.getItemCount();
+        int spawned = drops.deliver(world, operation.getOrigin(), player);
+        plugin.getMetrics().add("drops.items", items);
+        plugin.getMetrics().add("drops.entities", spawned);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,86 @@
+package io.mckenz.treemaintainer.listeners;
+
+import io.mckenz.treemaintainer.TreeMaintainer;
+import io.mckenz.treemaintainer.models.TreeType;
+import io.mckenz.treemaintainer.services.LoadSheddingService;
+import io.mckenz.treemaintainer.services.PreScanService;
+import io.mckenz.treemaintainer.services.TreeDetectionService;
+import io.mckenz.treemaintainer.services.TrunkTracker;
+import io.mckenz.treemaintainer.utils.BlockKeys;
+import io.mckenz.treemaintainer.utils.ToolUtils;
+import io.mckenz.treemaintainer.world.LiveWorldView;
+
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockDamageEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.logging.Level;
+
+/**
+ * Listener that starts scanning a tree as soon as a player starts chopping one of its logs,
+ * so the break handler only has to revalidate and apply the result.
+ */
+public class TreeDamageListener implements Listener {
+
+    private final TreeMaintainer plugin;
+    private final TreeDetectionService treeDetectionService;
+    private final PreScanService preScanService;
+    private final TrunkTracker trunkTracker;
+    private final LoadSheddingService loadSheddingService;
+
+    public TreeDamageListener(TreeMaintainer plugin, TreeDetectionService treeDetectionService,
+                              PreScanService preScanService, TrunkTracker trunkTracker,
+                              LoadSheddingService loadSheddingService) {
+        this.plugin = plugin;
+        this.treeDetectionService = treeDetectionService;
+        this.preScanService = preScanService;
+        this.trunkTracker = trunkTracker;
+        this.loadSheddingService = loadSheddingService;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockDamage(BlockDamageEvent event) {
+        try {
+            // Only worth it if the tree will be felled and the log takes more than one tick to break
+            if (!plugin.isPluginEnabled() || !plugin.isCleanupEnabled() || !plugin.isPreScanEnabled() || event.getInstaBreak()
+                    || !loadSheddingService.getLevel().allowsFelling()) {
+                return;
+            }
+            
+            Block block = event.getBlock();
+            TreeType treeType = plugin.getMaterialClassifier().getEnabledLogType(block.getType());
+            if (treeType == null) {
+                return;
+            }
+            
+            ItemStack tool = event.getItemInHand();
+            if (plugin.isRequireAxe() && (tool == null || !ToolUtils.isAxe(tool.getType()))) {
+                return;
+            }
+            
+            LiveWorldView view = new LiveWorldView(block.getWorld());
+            long key = BlockKeys.of(block);
+            if (!treeDetectionService.isTree(view, key)) {
+                return;
+            }
+            
+            // Breaking a corner of a 2x2 trunk that is not the last one does not fell the tree
+            if (treeType.canGrowAs2x2() && trunkTracker.hasOtherCorners(view, block.getWorld().getUID(), key, treeType)) {
+                return;
+            }
+            
+            preScanService.startPreScan(event.getPlayer(), block);
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "Error processing block damage event: " + e.getMessage(), e);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        preScanService.discardPreScan(event.getPlayer().getUniqueId());
+    }
+}
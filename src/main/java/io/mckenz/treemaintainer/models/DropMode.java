@@ -0,0 +1,37 @@
+package io.mckenz.treemaintainer.models;
+
+/**
+ * Where the items dropped by a felled tree end up.
+ */
+public enum DropMode {
+    /** Every block drops its own items where it was */
+    NATURAL("natural"),
+    /** The drops of the whole tree are merged into as few stacks as possible and spawned at the stump */
+    STUMP("stump"),
+    /** The drops of the whole tree go straight into the player's inventory; only what does not fit is spawned at the stump */
+    INVENTORY("inventory");
+
+    private final String configName;
+
+    DropMode(String configName) {
+        this.configName = configName;
+    }
+
+    public String getConfigName() {
+        return configName;
+    }
+
+    /**
+     * Find a DropMode by its config name
+     * @param configName The config name to search for
+     * @return The matching DropMode or null if not found
+     */
+    public static DropMode fromConfigName(String configName) {
+        for (DropMode mode : values()) {
+            if (mode.getConfigName().equalsIgnoreCase(configName)) {
+                return mode;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,39 @@
+package io.mckenz.treemaintainer.models;
+
+/**
+ * Which break effects, the particles and sound of a breaking block, a felled tree shows to nearby players.
+ */
+public enum EffectsPolicy {
+    /** Every removed block shows its break effect */
+    FULL("full"),
+    /** Only a capped number of blocks spread over the tree show their break effect */
+    SAMPLE("sample"),
+    /** The tree shows a single break effect at the stump once it is removed */
+    SUMMARY("summary"),
+    /** No break effects are sent, as with Block.breakNaturally on Spigot */
+    NONE("none");
+
+    private final String configName;
+
+    EffectsPolicy(String configName) {
+        this.configName = configName;
+    }
+
+    public String getConfigName() {
+        return configName;
+    }
+
+    /**
+     * Find an EffectsPolicy by its config name
+     * @param configName The config name to search for
+     * @return The matching EffectsPolicy or null if not found
+     */
+    public static EffectsPolicy fromConfigName(String configName) {
+        for (EffectsPolicy policy : values()) {
+            if (policy.getConfigName().equalsIgnoreCase(configName)) {
+                return policy;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,133 @@
+package io.mckenz.treemaintainer.models;
+
+import io.mckenz.treemaintainer.utils.BlockKeys;
+import io.mckenz.treemaintainer.utils.DropCollector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A tree that is being felled, from the break that started it until its cleanup is scheduled.
+ * Until the first scan is known the operation only covers the trunk column of the broken log;
+ * afterwards it covers the logs of every scan felled so far. Used from the main thread only.
+ */
+public final class FellingOperation {
+
+    private final UUID worldId;
+    private final TreeType treeType;
+    private final long origin;
+    private final UUID playerId;
+    private final long startedAt;
+    private final List<TreeScan> scans = new ArrayList<>(2);
+    private final DropCollector drops = new DropCollector();
+    private int minX;
+    private int minY;
+    private int minZ;
+    private int maxX;
+    private int maxY;
+    private int maxZ;
+
+    /**
+     * Create a new felling operation
+     * @param worldId The world the tree is in
+     * @param treeType The tree type
+     * @param origin The packed key of the log that was broken
+     * @param playerId The player felling the tree
+     */
+    public FellingOperation(UUID worldId, TreeType treeType, long origin, UUID playerId) {
+        this.worldId = worldId;
+        this.treeType = treeType;
+        this.origin = origin;
+        this.playerId = playerId;
+        this.startedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Add the scan of a felling round to the area the operation covers
+     * @param scan The scan being felled
+     */
+    public void addScan(TreeScan scan) {
+        if (scan.isEmpty()) {
+            return;
+        }
+        if (scans.isEmpty()) {
+            minX = scan.getMinX();
+            minY = scan.getMinY();
+            minZ = scan.getMinZ();
+            maxX = scan.getMaxX();
+            maxY = scan.getMaxY();
+            maxZ = scan.getMaxZ();
+        } else {
+            minX = Math.min(minX, scan.getMinX());
+            minY = Math.min(minY, scan.getMinY());
+            minZ = Math.min(minZ, scan.getMinZ());
+            maxX = Math.max(maxX, scan.getMaxX());
+            maxY = Math.max(maxY, scan.getMaxY());
+            maxZ = Math.max(maxZ, scan.getMaxZ());
+        }
+        scans.add(scan);
+    }
+
+    /**
+     * Check whether a log of a tree type belongs to the tree being felled
+     * @param key The packed key of the log
+     * @param logType The tree type of the log
+     * @return True if the log is part of this operation
+     */
+    public boolean covers(long key, TreeType logType) {
+        if (logType != treeType) {
+            return false;
+        }
+        if (scans.isEmpty()) {
+            // Still scanning; only the trunk column of the broken log is known to belong to the tree.
+            // A 2x2 trunk is only felled when its last corner is broken, so its corners never join early
+            return !treeType.canGrowAs2x2() && BlockKeys.x(key) == BlockKeys.x(origin) && BlockKeys.z(key) == BlockKeys.z(origin);
+        }
+        
+        int x = BlockKeys.x(key);
+        int y = BlockKeys.y(key);
+        int z = BlockKeys.z(key);
+        if (x < minX || x > maxX || y < minY || y > maxY || z < minZ || z > maxZ) {
+            return false;
+        }
+        for (TreeScan scan : scans) {
+            if (scan.containsLog(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public UUID getWorldId() {
+        return worldId;
+    }
+
+    public TreeType getTreeType() {
+        return treeType;
+    }
+
+    public long getOrigin() {
+        return origin;
+    }
+
+    public UUID getPlayerId() {
+        return playerId;
+    }
+
+    /**
+     * Get the drops gathered from every round of the operation, handed out once it ends
+     * @return The drop collector
+     */
+    public DropCollector getDrops() {
+        return drops;
+    }
+
+    /**
+     * Get when the operation started
+     * @return The start time in milliseconds since the epoch
+     */
+    public long getStartedAt() {
+        return startedAt;
+    }
+}
@@ -0,0 +1,41 @@
+package io.mckenz.treemaintainer.models;
+
+/**
+ * How much work the plugin does for each broken tree, lowered as the server comes under load.
+ */
+public enum LoadLevel {
+    /** Trees are felled and cleaned up completely */
+    FULL("Full felling"),
+    /** Trees are felled, but their leaves are left to decay naturally */
+    NO_LEAF_CLEANUP("Felling without leaf cleanup"),
+    /** Only broken logs are replanted; cleanup of trees felled earlier waits until load drops */
+    DEFER_CLEANUP("Replanting only, cleanup deferred"),
+    /** Only broken logs are replanted; pending cleanup is dropped */
+    REPLANT_ONLY("Replanting only");
+
+    private final String displayName;
+
+    LoadLevel(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Check whether trees are felled at this level
+     * @return True if breaking a log fells the tree
+     */
+    public boolean allowsFelling() {
+        return this == FULL || this == NO_LEAF_CLEANUP;
+    }
+
+    /**
+     * Check whether floating leaves are removed at this level
+     * @return True if leaves are cleaned up
+     */
+    public boolean allowsLeafCleanup() {
+        return this == FULL;
+    }
+}
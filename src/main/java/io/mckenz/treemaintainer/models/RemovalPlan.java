@@ -0,0 +1,108 @@
+package io.mckenz.treemaintainer.models;
+
+import io.mckenz.treemaintainer.utils.BlockKeys;
+
+import org.bukkit.Material;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Immutable list of blocks to remove from the world, each with the type it had
+ * when the plan was made. A plan can be built away from the main thread; when
+ * it is applied, blocks whose type has changed since are skipped.
+ */
+public final class RemovalPlan {
+
+    private final TreeScan scan;
+    private final long[] keys;
+    private final Material[] expectedTypes;
+
+    /**
+     * Create a new removal plan
+     * @param scan The scan the plan was made from
+     * @param keys The packed keys of the blocks to remove
+     * @param expectedTypes The type of each block when the plan was made
+     */
+    public RemovalPlan(TreeScan scan, long[] keys, Material[] expectedTypes) {
+        if (keys.length != expectedTypes.length) {
+            throw new IllegalArgumentException("Every block in a removal plan needs an expected type");
+        }
+        this.scan = scan;
+        this.keys = keys.clone();
+        this.expectedTypes = expectedTypes.clone();
+    }
+
+    /**
+     * Get a copy of this plan that removes its blocks from the top down and, within each layer,
+     * from the outside in, measured from the scan's origin. Removing blocks in this order means
+     * each removal opens the least new sky, which keeps lighting updates small.
+     * @return The reordered plan
+     */
+    public RemovalPlan inRemovalOrder() {
+        int originX = BlockKeys.x(scan.getOrigin());
+        int originZ = BlockKeys.z(scan.getOrigin());
+        int maxY = Integer.MIN_VALUE;
+        for (long key : keys) {
+            maxY = Math.max(maxY, BlockKeys.y(key));
+        }
+        
+        // Sort on one packed value per block: height from the top, then closeness to the trunk, then the index.
+        // Plans hold far fewer than 2^20 blocks, so the index fits in the low bits
+        long[] order = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            int dx = BlockKeys.x(keys[i]) - originX;
+            int dz = BlockKeys.z(keys[i]) - originZ;
+            long closeness = Math.max(0, 0xFFFFF - Math.min(0xFFFFF, dx * dx + dz * dz));
+            order[i] = ((long) (maxY - BlockKeys.y(keys[i])) << 40) | (closeness << 20) | i;
+        }
+        Arrays.sort(order);
+        
+        long[] sortedKeys = new long[keys.length];
+        Material[] sortedTypes = new Material[keys.length];
+        for (int i = 0; i < order.length; i++) {
+            int index = (int) (order[i] & 0xFFFFF);
+            sortedKeys[i] = keys[index];
+            sortedTypes[i] = expectedTypes[index];
+        }
+        return new RemovalPlan(scan, sortedKeys, sortedTypes);
+    }
+
+    /**
+     * Get the scan this plan was made from
+     * @return The tree scan
+     */
+    public TreeScan getScan() {
+        return scan;
+    }
+
+    public UUID getWorldId() {
+        return scan.getWorldId();
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    /**
+     * Get the packed key of a block to remove
+     * @param index The index of the block, from 0 to {@link #size()}
+     * @return The packed key
+     */
+    public long getKey(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Get the type a block had when the plan was made
+     * @param index The index of the block, from 0 to {@link #size()}
+     * @return The expected block type
+     */
+    public Material getExpectedType(int index) {
+        return expectedTypes[index];
+    }
+}
@@ -0,0 +1,189 @@
+package io.mckenz.treemaintainer.models;
+
+import io.mckenz.treemaintainer.utils.BlockKeys;
+import io.mckenz.treemaintainer.utils.LongOpenHashSet;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The shape of the search used to find the logs of a tree type.
+ * A profile is a kernel of neighbour offsets checked around every log, compiled
+ * into deduplicated packed key deltas, plus the limits of the search. Profiles
+ * are read from the {@code tree-shapes} section of the config.
+ */
+public final class ShapeProfile {
+
+    private static final int[][] FACES = {
+            {0, 0, -1}, {1, 0, 0}, {0, 0, 1}, {-1, 0, 0}, {0, 1, 0}, {0, -1, 0}
+    };
+    private static final int[][] DIAGONALS = {
+            {1, 0, -1}, {1, 0, 1}, {-1, 0, 1}, {-1, 0, -1}
+    };
+    private static final int[][] HORIZONTAL = {
+            {0, 0, -1}, {1, 0, 0}, {0, 0, 1}, {-1, 0, 0},
+            {1, 0, -1}, {1, 0, 1}, {-1, 0, 1}, {-1, 0, -1}
+    };
+
+    private final List<String> kernel;
+    private final long[] deltas;
+    private final int maxLogsMultiplier;
+    private final int minMaxLogs;
+    private final int columnHeight;
+
+    private ShapeProfile(List<String> kernel, long[] deltas, int maxLogsMultiplier, int minMaxLogs, int columnHeight) {
+        this.kernel = kernel;
+        this.deltas = deltas;
+        this.maxLogsMultiplier = maxLogsMultiplier;
+        this.minMaxLogs = minMaxLogs;
+        this.columnHeight = columnHeight;
+    }
+
+    /**
+     * Compile a shape profile.
+     * Each kernel entry is either a named group of offsets or a single {@code "x,y,z"} offset:
+     * {@code faces} (the six adjacent blocks), {@code diagonals} (the four horizontal diagonals),
+     * {@code diagonal-up} and {@code diagonal-down} (the eight blocks around the log one level
+     * above or below) and {@code two-away} (the faces and diagonals two blocks away).
+     * @param kernel The kernel entries
+     * @param maxLogsMultiplier The multiplier applied to the configured maximum distance
+     * @param minMaxLogs The minimum number of logs a tree may have
+     * @param columnHeight How far above the starting log to look for more of the trunk
+     * @return The compiled profile
+     * @throws IllegalArgumentException If a kernel entry is not valid
+     */
+    public static ShapeProfile compile(List<String> kernel, int maxLogsMultiplier, int minMaxLogs, int columnHeight) {
+        LongOpenHashSet seen = new LongOpenHashSet(64);
+        long[] deltas = new long[16];
+        int count = 0;
+
+        for (String entry : kernel) {
+            for (int[] offset : resolve(entry.trim().toLowerCase())) {
+                if (offset[0] == 0 && offset[1] == 0 && offset[2] == 0) {
+                    continue;
+                }
+                long delta = BlockKeys.delta(offset[0], offset[1], offset[2]);
+                if (seen.add(delta)) {
+                    if (count == deltas.length) {
+                        deltas = Arrays.copyOf(deltas, count * 2);
+                    }
+                    deltas[count++] = delta;
+                }
+            }
+        }
+
+        if (count == 0) {
+            throw new IllegalArgumentException("kernel is empty");
+        }
+        return new ShapeProfile(List.copyOf(kernel), Arrays.copyOf(deltas, count),
+                Math.max(1, maxLogsMultiplier), Math.max(0, minMaxLogs), Math.max(0, columnHeight));
+    }
+
+    /**
+     * Get the built-in profile of a tree type, used when the config does not define one
+     * @param treeType The tree type
+     * @return The default profile
+     */
+    public static ShapeProfile defaultFor(TreeType treeType) {
+        // Jungle trees can be extremely tall and spread their branches two blocks apart
+        if (treeType == TreeType.JUNGLE) {
+            return compile(List.of("faces", "diagonals", "diagonal-up", "diagonal-down", "two-away"), 3, 200, 30);
+        }
+        // 2x2 trees have diagonal branches in both directions
+        if (treeType.canGrowAs2x2()) {
+            return compile(List.of("faces", "diagonals", "diagonal-up", "diagonal-down"), 2, 100, 0);
+        }
+        // Large oak trees branch diagonally upwards
+        if (treeType == TreeType.OAK) {
+            return compile(List.of("faces", "diagonals", "diagonal-up"), 2, 100, 0);
+        }
+        return compile(List.of("faces", "diagonals"), 1, 0, 0);
+    }
+
+    private static int[][] resolve(String entry) {
+        switch (entry) {
+            case "faces":
+                return FACES;
+            case "diagonals":
+                return DIAGONALS;
+            case "diagonal-up":
+                return shift(HORIZONTAL, 1);
+            case "diagonal-down":
+                return shift(HORIZONTAL, -1);
+            case "two-away": {
+                int[][] offsets = new int[FACES.length + DIAGONALS.length][];
+                for (int i = 0; i < FACES.length; i++) {
+                    offsets[i] = new int[]{FACES[i][0] * 2, FACES[i][1] * 2, FACES[i][2] * 2};
+                }
+                for (int i = 0; i < DIAGONALS.length; i++) {
+                    offsets[FACES.length + i] = new int[]{DIAGONALS[i][0] * 2, 0, DIAGONALS[i][2] * 2};
+                }
+                return offsets;
+            }
+            default:
+                String[] parts = entry.split(",");
+                if (parts.length != 3) {
+                    throw new IllegalArgumentException("unknown kernel entry '" + entry + "'");
+                }
+                try {
+                    return new int[][]{{
+                            Integer.parseInt(parts[0].trim()),
+                            Integer.parseInt(parts[1].trim()),
+                            Integer.parseInt(parts[2].trim())
+                    }};
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("invalid offset '" + entry + "'");
+                }
+        }
+    }
+
+    private static int[][] shift(int[][] offsets, int dy) {
+        int[][] shifted = new int[offsets.length][];
+        for (int i = 0; i < offsets.length; i++) {
+            shifted[i] = new int[]{offsets[i][0], offsets[i][1] + dy, offsets[i][2]};
+        }
+        return shifted;
+    }
+
+    /**
+     * Get the kernel entries this profile was compiled from
+     * @return The kernel entries
+     */
+    public List<String> getKernel() {
+        return kernel;
+    }
+
+    /**
+     * Get the compiled neighbour offsets as packed key deltas.
+     * The array is shared and must not be modified.
+     * @return The packed deltas
+     */
+    public long[] getDeltas() {
+        return deltas;
+    }
+
+    public int getMaxLogsMultiplier() {
+        return maxLogsMultiplier;
+    }
+
+    public int getMinMaxLogs() {
+        return minMaxLogs;
+    }
+
+    /**
+     * Get how far above the starting log to look for more of the trunk
+     * @return The number of blocks to check, or 0 to not check
+     */
+    public int getColumnHeight() {
+        return columnHeight;
+    }
+
+    /**
+     * Get the maximum number of logs a scan may collect
+     * @param maxDistance The configured maximum distance
+     * @return The maximum number of logs
+     */
+    public int getMaxLogs(int maxDistance) {
+        return Math.max(maxDistance * maxLogsMultiplier, minMaxLogs);
+    }
+}
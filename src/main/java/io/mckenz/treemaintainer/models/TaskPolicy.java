@@ -0,0 +1,23 @@
+package io.mckenz.treemaintainer.models;
+
+/**
+ * What happens to a scheduled task tied to a block position when the chunk
+ * or world holding that position goes away, and when the plugin stops.
+ */
+public enum TaskPolicy {
+    /**
+     * Discarded when its chunk unloads; the work is only worth doing while players are nearby
+     */
+    DROP,
+    
+    /**
+     * Held while its chunk is unloaded and run once the chunk is loaded again
+     */
+    DEFER,
+    
+    /**
+     * Held while its chunk is unloaded, and run straight away when the plugin stops
+     * so the work is not lost
+     */
+    PERSIST
+}
@@ -0,0 +1,280 @@
+package io.mckenz.treemaintainer.models;
+
+import io.mckenz.treemaintainer.utils.BlockKeys;
+import io.mckenz.treemaintainer.utils.LongOpenHashSet;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Immutable result of scanning a tree.
+ * Holds the packed block keys of the tree's logs, the subset of logs that are
+ * held up by the ground, the leaves attached to the logs and the bounding box
+ * of all of them. Every stage of the felling pipeline works from one scan
+ * instead of searching the world again.
+ */
+public final class TreeScan {
+
+    private final UUID worldId;
+    private final TreeType treeType;
+    private final long origin;
+    private final long[] logs;
+    private final long[] leaves;
+    private final LongOpenHashSet logSet;
+    private final LongOpenHashSet groundedSet;
+    private final int groundedCount;
+    private final boolean truncated;
+    private final long regionVersion;
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int maxX;
+    private final int maxY;
+    private final int maxZ;
+
+    /**
+     * Create a new tree scan
+     * @param worldId The world the tree is in
+     * @param treeType The tree type, or null if no tree was found
+     * @param origin The packed key of the block the scan started from
+     * @param logs The packed keys of all logs found
+     * @param groundedLogs The packed keys of the logs that are connected to the ground
+     * @param leaves The packed keys of all leaves attached to the logs
+     * @param truncated Whether the scan stopped at its size limit before finishing
+     */
+    public TreeScan(UUID worldId, TreeType treeType, long origin, long[] logs, long[] groundedLogs,
+                    long[] leaves, boolean truncated) {
+        this.worldId = worldId;
+        this.treeType = treeType;
+        this.origin = origin;
+        this.logs = logs.clone();
+        this.leaves = leaves.clone();
+        this.truncated = truncated;
+        this.regionVersion = 0;
+
+        this.logSet = new LongOpenHashSet(logs.length);
+        for (long log : logs) {
+            logSet.add(log);
+        }
+        this.groundedSet = new LongOpenHashSet(groundedLogs.length);
+        for (long log : groundedLogs) {
+            groundedSet.add(log);
+        }
+        this.groundedCount = groundedSet.size();
+
+        int lowX = BlockKeys.x(origin), lowY = BlockKeys.y(origin), lowZ = BlockKeys.z(origin);
+        int highX = lowX, highY = lowY, highZ = lowZ;
+        for (long[] keys : new long[][]{logs, leaves}) {
+            for (long key : keys) {
+                int x = BlockKeys.x(key), y = BlockKeys.y(key), z = BlockKeys.z(key);
+                lowX = Math.min(lowX, x);
+                lowY = Math.min(lowY, y);
+                lowZ = Math.min(lowZ, z);
+                highX = Math.max(highX, x);
+                highY = Math.max(highY, y);
+                highZ = Math.max(highZ, z);
+            }
+        }
+        this.minX = lowX;
+        this.minY = lowY;
+        this.minZ = lowZ;
+        this.maxX = highX;
+        this.maxY = highY;
+        this.maxZ = highZ;
+    }
+
+    private TreeScan(TreeScan source, long regionVersion) {
+        this.worldId = source.worldId;
+        this.treeType = source.treeType;
+        this.origin = source.origin;
+        this.logs = source.logs;
+        this.leaves = source.leaves;
+        this.logSet = source.logSet;
+        this.groundedSet = source.groundedSet;
+        this.groundedCount = source.groundedCount;
+        this.truncated = source.truncated;
+        this.regionVersion = regionVersion;
+        this.minX = source.minX;
+        this.minY = source.minY;
+        this.minZ = source.minZ;
+        this.maxX = source.maxX;
+        this.maxY = source.maxY;
+        this.maxZ = source.maxZ;
+    }
+
+    /**
+     * Create a scan that contains no tree
+     * @param worldId The world that was scanned
+     * @param origin The packed key of the block the scan started from
+     * @return An empty scan
+     */
+    public static TreeScan empty(UUID worldId, long origin) {
+        return new TreeScan(worldId, null, origin, new long[0], new long[0], new long[0], false);
+    }
+
+    /**
+     * Combine this scan with the scan of a neighbouring tree of the same type, so both can be
+     * cleaned up in one pass. The combined scan keeps this scan's origin and has no region version.
+     * @param other The other scan
+     * @return The combined scan
+     */
+    public TreeScan merge(TreeScan other) {
+        LongOpenHashSet seen = new LongOpenHashSet(logs.length + other.logs.length);
+        long[] mergedLogs = union(logs, other.logs, seen);
+        seen.clear();
+        long[] mergedLeaves = union(leaves, other.leaves, seen);
+        
+        long[] mergedGrounded = new long[groundedCount + other.groundedCount];
+        int count = 0;
+        for (long log : mergedLogs) {
+            if (groundedSet.contains(log) || other.groundedSet.contains(log)) {
+                mergedGrounded[count++] = log;
+            }
+        }
+        return new TreeScan(worldId, treeType, origin, mergedLogs, Arrays.copyOf(mergedGrounded, count),
+                mergedLeaves, truncated || other.truncated);
+    }
+
+    private static long[] union(long[] first, long[] second, LongOpenHashSet seen) {
+        long[] result = new long[first.length + second.length];
+        int count = 0;
+        for (long[] keys : new long[][]{first, second}) {
+            for (long key : keys) {
+                if (seen.add(key)) {
+                    result[count++] = key;
+                }
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Get a copy of this scan stamped with the version of its region
+     * @param regionVersion The region version
+     * @return The stamped scan, sharing this scan's data
+     */
+    public TreeScan withRegionVersion(long regionVersion) {
+        return new TreeScan(this, regionVersion);
+    }
+
+    public UUID getWorldId() {
+        return worldId;
+    }
+
+    /**
+     * Get the tree type of this scan
+     * @return The tree type, or null if the scan found no tree
+     */
+    public TreeType getTreeType() {
+        return treeType;
+    }
+
+    /**
+     * Get the packed key of the block the scan started from
+     * @return The origin key
+     */
+    public long getOrigin() {
+        return origin;
+    }
+
+    public boolean isEmpty() {
+        return logs.length == 0;
+    }
+
+    public int getLogCount() {
+        return logs.length;
+    }
+
+    /**
+     * Get the packed key of a log
+     * @param index The index of the log, from 0 to {@link #getLogCount()}
+     * @return The packed key
+     */
+    public long getLog(int index) {
+        return logs[index];
+    }
+
+    public int getGroundedLogCount() {
+        return groundedCount;
+    }
+
+    public int getLeafCount() {
+        return leaves.length;
+    }
+
+    /**
+     * Get the packed key of an attached leaf
+     * @param index The index of the leaf, from 0 to {@link #getLeafCount()}
+     * @return The packed key
+     */
+    public long getLeaf(int index) {
+        return leaves[index];
+    }
+
+    /**
+     * Check whether a position is one of this tree's logs
+     * @param key The packed key
+     * @return True if the position is a log of this tree
+     */
+    public boolean containsLog(long key) {
+        return logSet.contains(key);
+    }
+
+    /**
+     * Check whether a position is a log that is connected to the ground
+     * @param key The packed key
+     * @return True if the position is a grounded log of this tree
+     */
+    public boolean isGrounded(long key) {
+        return groundedSet.contains(key);
+    }
+
+    /**
+     * Check whether the scan stopped at its size limit, so the tree may have more logs
+     * @return True if the scan is incomplete
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Get the version of the scanned region at the time of the scan
+     * @return The region version
+     */
+    public long getRegionVersion() {
+        return regionVersion;
+    }
+
+    /**
+     * Estimate the memory used by this scan
+     * @return The estimated size in bytes
+     */
+    public long getEstimatedBytes() {
+        // Key arrays plus the open hash sets of logs, which are kept at most half full
+        return 8L * (logs.length + leaves.length) + 16L * (logSet.size() + groundedSet.size());
+    }
+
+    public int getMinX() {
+        return minX;
+    }
+
+    public int getMinY() {
+        return minY;
+    }
+
+    public int getMinZ() {
+        return minZ;
+    }
+
+    public int getMaxX() {
+        return maxX;
+    }
+
+    public int getMaxY() {
+        return maxY;
+    }
+
+    public int getMaxZ() {
+        return maxZ;
+    }
+}
@@ -0,0 +1,32 @@
+package io.mckenz.treemaintainer.services;
+
+import java.util.UUID;
+
+/**
+ * Service interface for limiting how much felling work each player and each world may start.
+ * Work is measured by its estimated cost in blocks rather than by the number of trees.
+ * Work over the limit is queued for later or dropped, depending on the configured policy.
+ */
+public interface AdmissionService {
+
+    /**
+     * Run work now if the player and the world have capacity for it, otherwise queue or drop it
+     * @param playerId The player the work is for
+     * @param worldId The world the work is in
+     * @param cost The estimated cost of the work in blocks
+     * @param work The work to run once admitted
+     * @param onDropped Called instead of the work if it is dropped
+     */
+    void submit(UUID playerId, UUID worldId, int cost, Runnable work, Runnable onDropped);
+    
+    /**
+     * Get the number of queued pieces of work
+     * @return The queue length
+     */
+    int getQueuedCount();
+    
+    /**
+     * Drop all queued work without running it, and forget all rate limits
+     */
+    void clear();
+}
@@ -0,0 +1,54 @@
+package io.mckenz.treemaintainer.services;
+
+import io.mckenz.treemaintainer.models.TreeScan;
+
+import org.bukkit.block.Block;
+
+import java.util.UUID;
+
+/**
+ * Service interface for tracking the canopies of felled trees.
+ * Leaves left around a felled tree would otherwise decay one by one over the next minutes,
+ * each with its own random tick, decay event and neighbour updates. A tracked canopy is swept
+ * once after the tree's cleanup, removing those leaves as one plan before they decay.
+ */
+public interface CanopyTracker {
+
+    /**
+     * Start tracking the canopy of a felled tree
+     * @param scan The scan of the felled tree
+     * @param delayTicks The number of ticks until the tree's cleanup runs; the canopy is swept shortly after,
+     *                   or up to the decay window later while the cleanup of leaves is shed
+     */
+    void track(TreeScan scan, long delayTicks);
+    
+    /**
+     * Take over the decay of a leaf block if it belongs to a tracked canopy, sweeping the canopy on the next tick
+     * @param block The leaf block about to decay
+     * @return True if the leaf will be removed by the sweep and its decay should be cancelled
+     */
+    boolean interceptDecay(Block block);
+    
+    /**
+     * Get the number of canopies being tracked
+     * @return The number of canopies
+     */
+    int getTrackedCount();
+    
+    /**
+     * Estimate the memory kept alive by tracked canopies
+     * @return The estimated size in bytes
+     */
+    long getEstimatedRetainedBytes();
+    
+    /**
+     * Stop tracking the canopies of a world
+     * @param worldId The world that was unloaded
+     */
+    void clearWorld(UUID worldId);
+    
+    /**
+     * Stop tracking every canopy
+     */
+    void clear();
+}
@@ -1,30 +1,58 @@
 package io.mckenz.treemaintainer.services;
 
-import org.bukkit.block.Block;
+import io.mckenz.treemaintainer.models.TreeScan;
+
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service interface for tree cleanup operations.
  */
 public interface CleanupService {
 
+    /**
+     * Schedule the cleanup of a felled tree.
+     * A pending cleanup of a neighbouring tree of the same type whose area overlaps this
+     * tree's absorbs it, so shared canopy is resolved by one scan instead of one per tree.
+     * @param scan The scan of the felled tree
+     * @param delayTicks The number of ticks to wait before cleaning up
+     */
+    void scheduleCleanup(TreeScan scan, long delayTicks);
+    
+    /**
+     * Get the number of scheduled cleanups that have not run yet
+     * @return The number of pending cleanups
+     */
+    int getPendingCleanups();
+    
+    /**
+     * Estimate the memory kept alive by the scans of scheduled cleanups
+     * @return The estimated size in bytes
+     */
+    long getEstimatedRetainedBytes();
+    
+    /**
+     * Cancel every scheduled cleanup
+     */
+    void clear();
+
     /**
      * Clean up floating logs and leaves after a tree has been cut
-     * @param startBlock The block where the tree was cut
-     * @return The number of blocks cleaned up
+     * @param scan The scan of the tree that was cut
+     * @return A future completed on the main thread with the number of blocks cleaned up
      */
-    int cleanupFloatingTreeParts(Block startBlock);
+    CompletableFuture<Integer> cleanupFloatingTreeParts(TreeScan scan);
     
     /**
      * Clean up floating logs after a tree has been cut
-     * @param startBlock The block where the tree was cut
-     * @return The number of logs cleaned up
+     * @param scan The scan of the tree that was cut
+     * @return A future completed on the main thread with the number of logs cleaned up
      */
-    int cleanupFloatingLogs(Block startBlock);
+    CompletableFuture<Integer> cleanupFloatingLogs(TreeScan scan);
     
     /**
      * Clean up floating leaves after a tree has been cut
-     * @param startBlock The block where the tree was cut
-     * @return The number of leaves cleaned up
+     * @param scan The scan of the tree that was cut
+     * @return A future completed on the main thread with the number of leaves cleaned up
      */
-    int cleanupFloatingLeaves(Block startBlock);
-} 
\ No newline at end of file
+    CompletableFuture<Integer> cleanupFloatingLeaves(TreeScan scan);
+}
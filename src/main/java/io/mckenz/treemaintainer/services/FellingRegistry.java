@@ -0,0 +1,50 @@
+package io.mckenz.treemaintainer.services;
+
+import io.mckenz.treemaintainer.models.FellingOperation;
+import io.mckenz.treemaintainer.models.TreeType;
+
+import java.util.UUID;
+
+/**
+ * Service interface for tracking the trees that are being felled.
+ * A log broken inside a tree that is already being felled joins that operation
+ * instead of starting another scan and removal of the same blocks.
+ */
+public interface FellingRegistry {
+
+    /**
+     * Start tracking a felling operation
+     * @param worldId The world the tree is in
+     * @param treeType The tree type
+     * @param origin The packed key of the log that was broken
+     * @param playerId The player felling the tree
+     * @return The new operation
+     */
+    FellingOperation begin(UUID worldId, TreeType treeType, long origin, UUID playerId);
+    
+    /**
+     * Find the active operation a log belongs to
+     * @param worldId The world the log is in
+     * @param key The packed key of the log
+     * @param logType The tree type of the log
+     * @return The operation, or null if the log is not part of a tree being felled
+     */
+    FellingOperation find(UUID worldId, long key, TreeType logType);
+    
+    /**
+     * Stop tracking a felling operation. Ending an operation more than once has no effect
+     * @param operation The operation that has finished
+     */
+    void end(FellingOperation operation);
+    
+    /**
+     * Get the number of trees being felled
+     * @return The number of active operations
+     */
+    int getActiveCount();
+    
+    /**
+     * Stop tracking every operation
+     */
+    void clear();
+}
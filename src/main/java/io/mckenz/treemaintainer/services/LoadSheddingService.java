@@ -0,0 +1,34 @@
+package io.mckenz.treemaintainer.services;
+
+import io.mckenz.treemaintainer.models.LoadLevel;
+
+/**
+ * Service interface for adapting the plugin's work to server load.
+ * The service samples the server's tick time and the plugin's own time per tick,
+ * and lowers the {@link LoadLevel} as load rises.
+ */
+public interface LoadSheddingService {
+
+    /**
+     * Get the current load level
+     * @return The level, which is {@link LoadLevel#FULL} when load shedding is disabled
+     */
+    LoadLevel getLevel();
+    
+    /**
+     * Get the server's average tick time over the last sample window
+     * @return The tick time in milliseconds
+     */
+    double getTickMillis();
+    
+    /**
+     * Get the plugin's average time per tick over the last sample window
+     * @return The plugin's time in milliseconds
+     */
+    double getPluginMillis();
+    
+    /**
+     * Stop sampling
+     */
+    void shutdown();
+}
@@ -0,0 +1,43 @@
+package io.mckenz.treemaintainer.services;
+
+import io.mckenz.treemaintainer.models.TreeScan;
+
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Service interface for scanning trees while a player is still chopping them.
+ * A player hits a log for several ticks before it breaks; a scan started on the
+ * first hit is usually finished by the time the break event fires.
+ */
+public interface PreScanService {
+
+    /**
+     * Start scanning the tree a player has started to chop, replacing any earlier pre-scan of that player
+     * @param player The player chopping the log
+     * @param block The log being chopped
+     */
+    void startPreScan(Player player, Block block);
+    
+    /**
+     * Take the pre-scan of a log that a player has broken
+     * @param player The player that broke the log
+     * @param block The broken log
+     * @return A future completed on the main thread with the scan, or null if the log was not pre-scanned
+     */
+    CompletableFuture<TreeScan> takePreScan(Player player, Block block);
+    
+    /**
+     * Discard the pre-scan of a player, if any
+     * @param playerId The player's UUID
+     */
+    void discardPreScan(UUID playerId);
+    
+    /**
+     * Discard all pre-scans
+     */
+    void clear();
+}
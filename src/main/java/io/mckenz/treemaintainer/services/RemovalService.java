@@ -0,0 +1,62 @@
+package io.mckenz.treemaintainer.services;
+
+import io.mckenz.treemaintainer.models.RemovalPlan;
+import io.mckenz.treemaintainer.utils.DropCollector;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Service interface for breaking the blocks of removal plans.
+ * Plans are queued and broken on the main thread within a time budget per tick,
+ * so felling a large tree is spread over several ticks instead of causing a lag spike.
+ */
+public interface RemovalService {
+
+    /**
+     * Queue the blocks of a removal plan to be broken
+     * @param plan The plan to apply
+     * @param tool The tool to break the blocks with, or null to break them without a tool
+     * @param ownerId The player the blocks are broken for, or null if no player caused the removal
+     * @return A future completed on the main thread with the number of blocks broken
+     */
+    CompletableFuture<Integer> submit(RemovalPlan plan, ItemStack tool, UUID ownerId);
+
+    /**
+     * Queue the blocks of a removal plan to be broken, collecting their drops
+     * @param plan The plan to apply
+     * @param tool The tool to break the blocks with, or null to break them without a tool
+     * @param ownerId The player the blocks are broken for, or null if no player caused the removal
+     * @param drops The collector to add the drops to, which the caller hands out, or null to let the
+     *              plan handle its own drops
+     * @return A future completed on the main thread with the number of blocks broken
+     */
+    CompletableFuture<Integer> submit(RemovalPlan plan, ItemStack tool, UUID ownerId, DropCollector drops);
+
+    /**
+     * Get the number of blocks waiting to be broken
+     * @return The number of queued blocks
+     */
+    int getQueuedBlocks();
+
+    /**
+     * Get the number of plans waiting to be finished
+     * @return The number of queued plans
+     */
+    int getQueuedPlans();
+
+    /**
+     * Estimate the memory kept alive by queued plans
+     * @return The estimated size in bytes
+     */
+    long getEstimatedRetainedBytes();
+
+    /**
+     * Break every queued block immediately and stop the executor.
+     * Plans finished this way complete their futures with the number of blocks broken, and plans
+     * submitted afterwards complete straight away without breaking anything.
+     */
+    void shutdown();
+}
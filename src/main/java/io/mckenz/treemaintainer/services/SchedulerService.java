@@ -0,0 +1,112 @@
+package io.mckenz.treemaintainer.services;
+
+import io.mckenz.treemaintainer.models.TaskPolicy;
+import io.mckenz.treemaintainer.utils.TimingWheel;
+
+import java.util.UUID;
+
+/**
+ * Service interface for the plugin's delayed tasks.
+ * All delayed work such as replanting, follow-up passes and cleanup runs from a
+ * single repeating task instead of creating a Bukkit task for every tree.
+ * Tasks about a place in a world are registered with the world and packed block
+ * position rather than live blocks, so waiting tasks never keep a chunk or world
+ * loaded, and they follow their chunk as it unloads and loads again.
+ */
+public interface SchedulerService {
+
+    /**
+     * Run a task on the main thread after a delay
+     * @param task The task to run
+     * @param delayTicks The delay in ticks; values below 1 run the task on the next tick
+     * @return The scheduled task, which can be passed to {@link #cancel(TimingWheel.Task)}
+     */
+    TimingWheel.Task runLater(Runnable task, long delayTicks);
+
+    /**
+     * Run a task about a block position on the main thread after a delay.
+     * The task is cancelled when its world unloads, and handled according to its policy when its chunk unloads.
+     * A task scheduled while its chunk is already unloaded is handled the same way straight away.
+     * @param task The task to run
+     * @param delayTicks The delay in ticks; values below 1 run the task on the next tick
+     * @param worldId The world the task works in
+     * @param key The packed key of the block the task works on
+     * @param policy What to do with the task when its chunk unloads or the plugin stops
+     * @param onDropped Called if the task is discarded because its chunk or world unloaded, or null
+     * @return The scheduled task, which can be passed to {@link #cancel(TimingWheel.Task)}
+     */
+    TimingWheel.Task runLater(Runnable task, long delayTicks, UUID worldId, long key, TaskPolicy policy, Runnable onDropped);
+
+    /**
+     * Run a task on the main thread once the chunk holding a block position is loaded.
+     * Used to resume work that stopped at a chunk that is not loaded instead of loading it.
+     * @param task The task to run, on the tick after the chunk loads
+     * @param worldId The world of the chunk
+     * @param key The packed key of a block in the chunk
+     * @param timeoutTicks How long to wait for the chunk
+     * @param onTimeout Called instead of the task if the chunk has not loaded in time
+     * @param onWorldUnloaded Called instead of the task if the world unloads first, while it is still registered
+     * @return The waiting task, which can be passed to {@link #cancel(TimingWheel.Task)}
+     */
+    TimingWheel.Task runWhenLoaded(Runnable task, UUID worldId, long key, long timeoutTicks, Runnable onTimeout,
+                                   Runnable onWorldUnloaded);
+
+    /**
+     * Hold or discard the tasks in a chunk that is unloading
+     * @param worldId The world of the chunk
+     * @param chunkX The chunk's X coordinate
+     * @param chunkZ The chunk's Z coordinate
+     */
+    void chunkUnloaded(UUID worldId, int chunkX, int chunkZ);
+
+    /**
+     * Resume the tasks held for a chunk that has loaded
+     * @param worldId The world of the chunk
+     * @param chunkX The chunk's X coordinate
+     * @param chunkZ The chunk's Z coordinate
+     */
+    void chunkLoaded(UUID worldId, int chunkX, int chunkZ);
+
+    /**
+     * Discard every task in a world that is unloading
+     * @param worldId The world
+     */
+    void worldUnloaded(UUID worldId);
+
+    /**
+     * Cancel a task that has not run yet
+     * @param task The task to cancel
+     * @return True if the task was cancelled
+     */
+    boolean cancel(TimingWheel.Task task);
+
+    /**
+     * Get the number of tasks waiting to run
+     * @return The number of pending tasks
+     */
+    int getPendingTasks();
+
+    /**
+     * Get the number of tasks held until their chunk loads again
+     * @return The number of held tasks
+     */
+    int getHeldTasks();
+
+    /**
+     * Estimate the memory kept alive by waiting and held tasks
+     * @return The estimated size in bytes
+     */
+    long getEstimatedRetainedBytes();
+
+    /**
+     * Get the scheduler's tick counter, which {@link TimingWheel.Task#getDeadline()} is measured in
+     * @return The current tick
+     */
+    long getCurrentTick();
+
+    /**
+     * Stop the scheduler. Tasks with the {@link TaskPolicy#PERSIST} policy whose chunk is
+     * loaded are run first; every other task is discarded without calling back.
+     */
+    void shutdown();
+}
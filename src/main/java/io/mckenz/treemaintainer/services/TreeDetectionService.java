@@ -1,42 +1,121 @@
 package io.mckenz.treemaintainer.services;
 
-import org.bukkit.block.Block;
+import io.mckenz.treemaintainer.models.RemovalPlan;
+import io.mckenz.treemaintainer.models.TreeScan;
+import io.mckenz.treemaintainer.world.VoxelView;
 
-import java.util.Set;
+import org.bukkit.World;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service interface for tree detection operations.
+ * Positions are packed block keys (see {@link io.mckenz.treemaintainer.utils.BlockKeys})
+ * and blocks are read through a {@link VoxelView}.
  */
 public interface TreeDetectionService {
 
     /**
      * Check if a block is part of a tree
-     * @param block The block to check
+     * @param view The blocks to read
+     * @param key The packed key of the block to check
      * @return True if the block is part of a tree, false otherwise
      */
-    boolean isTree(Block block);
+    boolean isTree(VoxelView view, long key);
+    
+    /**
+     * Scan the tree that a log belongs to
+     * @param view The blocks to read
+     * @param worldId The world being scanned
+     * @param origin The packed key of the starting log
+     * @param maxDistance The maximum distance to search
+     * @return The scan of the tree, which is empty if the block is not a log
+     */
+    TreeScan scanTree(VoxelView view, UUID worldId, long origin, int maxDistance);
+    
+    /**
+     * Scan the tree that a log belongs to on the main thread, spread over as many ticks as needed.
+     * Each tick the scan visits at most the configured number of blocks and spends at most the
+     * configured time, then continues from where it stopped on the next tick. Small trees finish
+     * straight away, in which case the returned future is already complete.
+     * @param view The blocks to read
+     * @param worldId The world being scanned
+     * @param origin The packed key of the starting log
+     * @param maxDistance The maximum distance to search
+     * @return A future completed on the main thread with the scan
+     */
+    CompletableFuture<TreeScan> scanTreeIncrementally(VoxelView view, UUID worldId, long origin, int maxDistance);
+    
+    /**
+     * Check whether the region of a scan has changed since the scan was taken
+     * @param scan The scan to check
+     * @param knownChanges The number of changes the caller already knows about, such as the log being broken
+     * @return True if the region has had no other changes
+     */
+    boolean isCurrent(TreeScan scan, int knownChanges);
     
     /**
-     * Find all connected log blocks that are part of the same tree
-     * @param startBlock The starting log block
+     * Bring a scan up to date with the world.
+     * The scan is returned unchanged unless its region has changed since it was
+     * taken or it stopped at its size limit; otherwise the tree is scanned again
+     * starting from the scan's remaining logs.
+     * @param scan The scan to refresh
      * @param maxDistance The maximum distance to search
-     * @return A set of connected log blocks
+     * @return The refreshed scan, or the same scan if nothing has changed
      */
-    Set<Block> findConnectedLogs(Block startBlock, int maxDistance);
+    TreeScan refreshScan(TreeScan scan, int maxDistance);
     
     /**
-     * Find all floating log blocks after a tree has been cut
-     * @param startBlock The block where the tree was cut
+     * Combine the scans of two neighbouring trees of the same type.
+     * The combined scan is stamped as current only if both scans were current.
+     * @param first The first scan, whose origin is kept
+     * @param second The second scan
+     * @return The combined scan
+     */
+    TreeScan mergeScans(TreeScan first, TreeScan second);
+    
+    /**
+     * Scan the logs still standing next to a tree whose logs have been removed, such as
+     * logs beyond the size limit of the scan or logs the scan missed.
+     * Runs in budgeted steps like {@link #scanTreeIncrementally}.
+     * @param scan The scan of the felled tree
      * @param maxDistance The maximum distance to search
-     * @return A set of floating log blocks
+     * @return A future completed on the main thread with the scan of the remaining logs, which is empty if none remain
+     */
+    CompletableFuture<TreeScan> scanRemainingLogs(TreeScan scan, int maxDistance);
+    
+    /**
+     * Make a plan to remove every log of a scan that is still standing, except the block the scan started from
+     * @param view The blocks to read
+     * @param scan The scan of the tree
+     * @return The removal plan
      */
-    Set<Block> findFloatingLogs(Block startBlock, int maxDistance);
+    RemovalPlan planRemoval(VoxelView view, TreeScan scan);
     
     /**
-     * Find all floating leaf blocks after a tree has been cut
-     * @param startBlock The block where the tree was cut
+     * Make a plan to remove every leaf of a scanned tree's canopy that is no longer held up by a log,
+     * following vanilla leaf distance so the canopy does not have to decay slowly afterwards
+     * @param view The blocks to read
+     * @param scan The scan of the tree
+     * @return The removal plan
+     */
+    RemovalPlan planLeafRemoval(VoxelView view, TreeScan scan);
+    
+    /**
+     * Scan a tree away from the main thread and plan the removal of its logs.
+     * Must be called on the main thread, which takes snapshots of the loaded chunks
+     * around the block; the scan itself runs on a worker thread. The plan should be
+     * applied on the main thread, where blocks that have changed since are skipped.
+     * @param world The world of the tree
+     * @param origin The packed key of the starting log
      * @param maxDistance The maximum distance to search
-     * @return A set of floating leaf blocks
+     * @return A future completed on a worker thread with the removal plan
+     */
+    CompletableFuture<RemovalPlan> planFellingAsync(World world, long origin, int maxDistance);
+    
+    /**
+     * Stop the worker threads used for asynchronous detection
      */
-    Set<Block> findFloatingLeaves(Block startBlock, int maxDistance);
-} 
\ No newline at end of file
+    void shutdown();
+}
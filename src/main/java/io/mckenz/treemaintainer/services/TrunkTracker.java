@@ -0,0 +1,45 @@
+package io.mckenz.treemaintainer.services;
+
+import io.mckenz.treemaintainer.models.TreeType;
+import io.mckenz.treemaintainer.world.VoxelView;
+
+import java.util.UUID;
+
+/**
+ * Service interface for tracking the corners of 2x2 trunks as they are chopped.
+ * A 2x2 tree is only felled when the last corner of its trunk is broken; the
+ * tracker answers whether other corners remain without scanning the tree.
+ */
+public interface TrunkTracker {
+
+    /**
+     * Record the break of a log that may be a corner of a 2x2 trunk
+     * @param view The blocks to read
+     * @param worldId The world the log is in
+     * @param key The packed key of the broken log, which must still be present
+     * @param treeType The tree type of the log
+     * @return True if other corners of the trunk are still standing, so the tree should not be felled yet
+     */
+    boolean breakCorner(VoxelView view, UUID worldId, long key, TreeType treeType);
+    
+    /**
+     * Check whether a log has other trunk corners standing next to it, without recording anything
+     * @param view The blocks to read
+     * @param worldId The world the log is in
+     * @param key The packed key of the log
+     * @param treeType The tree type of the log
+     * @return True if breaking the log would not fell the tree
+     */
+    boolean hasOtherCorners(VoxelView view, UUID worldId, long key, TreeType treeType);
+    
+    /**
+     * Get the number of trunks being tracked
+     * @return The number of trunks
+     */
+    int getTrackedCount();
+    
+    /**
+     * Stop tracking every trunk
+     */
+    void clear();
+}
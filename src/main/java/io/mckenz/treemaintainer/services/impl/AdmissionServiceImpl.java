@@ -0,0 +1,155 @@
+package io.mckenz.treemaintainer.services.impl;
+
+import io.mckenz.treemaintainer.TreeMaintainer;
+import io.mckenz.treemaintainer.services.AdmissionService;
+import io.mckenz.treemaintainer.services.SchedulerService;
+import io.mckenz.treemaintainer.utils.TokenBucket;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+
+/**
+ * Implementation of the AdmissionService interface.
+ * Each player and each world has a token bucket refilled at a configured number of
+ * blocks per second. Work is admitted when both buckets have room for its cost.
+ * Deferred work waits in a bounded queue that is retried a few times per second;
+ * work from a player who is still over the limit does not hold up anyone else.
+ */
+public class AdmissionServiceImpl implements AdmissionService {
+
+    private static final long RETRY_TICKS = 5;
+    // Work that has waited this long is dropped; the tree has likely been dealt with another way
+    private static final long MAX_WAIT_MILLIS = 30000;
+    // Full buckets are forgotten once this many are kept
+    private static final int MAX_IDLE_BUCKETS = 256;
+
+    private final TreeMaintainer plugin;
+    private final SchedulerService schedulerService;
+    private final Map<UUID, TokenBucket> playerBuckets = new HashMap<>();
+    private final Map<UUID, TokenBucket> worldBuckets = new HashMap<>();
+    private final ArrayDeque<PendingWork> queue = new ArrayDeque<>();
+    private boolean retryScheduled;
+
+    public AdmissionServiceImpl(TreeMaintainer plugin, SchedulerService schedulerService) {
+        this.plugin = plugin;
+        this.schedulerService = schedulerService;
+    }
+
+    /**
+     * Work waiting for capacity
+     */
+    private static final class PendingWork {
+        private final UUID playerId;
+        private final UUID worldId;
+        private final int cost;
+        private final Runnable work;
+        private final Runnable onDropped;
+        private final long queuedAt = System.currentTimeMillis();
+
+        private PendingWork(UUID playerId, UUID worldId, int cost, Runnable work, Runnable onDropped) {
+            this.playerId = playerId;
+            this.worldId = worldId;
+            this.cost = cost;
+            this.work = work;
+            this.onDropped = onDropped;
+        }
+    }
+
+    @Override
+    public void submit(UUID playerId, UUID worldId, int cost, Runnable work, Runnable onDropped) {
+        if (!plugin.isAdmissionEnabled() || tryAdmit(playerId, worldId, cost)) {
+            plugin.getMetrics().increment("admission.admitted");
+            work.run();
+            return;
+        }
+        
+        if (!plugin.isAdmissionDeferEnabled() || queue.size() >= plugin.getAdmissionQueueSize()) {
+            plugin.debug("Dropping felling work costing " + cost + " blocks; the player or world is over its limit");
+            plugin.getMetrics().increment("admission.dropped");
+            onDropped.run();
+            return;
+        }
+        
+        plugin.debug("Deferring felling work costing " + cost + " blocks; the player or world is over its limit");
+        plugin.getMetrics().increment("admission.deferred");
+        queue.addLast(new PendingWork(playerId, worldId, cost, work, onDropped));
+        scheduleRetry();
+    }
+
+    @Override
+    public int getQueuedCount() {
+        return queue.size();
+    }
+
+    @Override
+    public void clear() {
+        queue.clear();
+        playerBuckets.clear();
+        worldBuckets.clear();
+    }
+
+    private boolean tryAdmit(UUID playerId, UUID worldId, int cost) {
+        double playerRate = plugin.getAdmissionPlayerRate();
+        double playerBurst = plugin.getAdmissionPlayerBurst();
+        double worldRate = plugin.getAdmissionWorldRate();
+        double worldBurst = plugin.getAdmissionWorldBurst();
+        
+        TokenBucket playerBucket = playerBuckets.computeIfAbsent(playerId, id -> new TokenBucket(playerBurst));
+        TokenBucket worldBucket = worldBuckets.computeIfAbsent(worldId, id -> new TokenBucket(worldBurst));
+        if (!playerBucket.canAcquire(cost, playerRate, playerBurst) || !worldBucket.canAcquire(cost, worldRate, worldBurst)) {
+            return false;
+        }
+        playerBucket.consume(cost);
+        worldBucket.consume(cost);
+        
+        if (playerBuckets.size() > MAX_IDLE_BUCKETS) {
+            playerBuckets.values().removeIf(bucket -> bucket.isFull(playerRate, playerBurst));
+        }
+        return true;
+    }
+
+    private void scheduleRetry() {
+        if (!retryScheduled) {
+            retryScheduled = true;
+            schedulerService.runLater(this::retry, RETRY_TICKS);
+        }
+    }
+
+    private void retry() {
+        retryScheduled = false;
+        long expiredBefore = System.currentTimeMillis() - MAX_WAIT_MILLIS;
+        
+        // Take the work off the queue first; running it may submit more
+        List<Runnable> ready = new ArrayList<>();
+        Iterator<PendingWork> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            PendingWork pending = iterator.next();
+            if (pending.queuedAt < expiredBefore) {
+                iterator.remove();
+                plugin.getMetrics().increment("admission.expired");
+                ready.add(pending.onDropped);
+            } else if (tryAdmit(pending.playerId, pending.worldId, pending.cost)) {
+                iterator.remove();
+                plugin.getMetrics().increment("admission.admitted");
+                ready.add(pending.work);
+            }
+        }
+        for (Runnable work : ready) {
+            try {
+                work.run();
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.WARNING, "Error running deferred felling work: " + e.getMessage(), e);
+            }
+        }
+        
+        if (!queue.isEmpty()) {
+            scheduleRetry();
+        }
+    }
+}
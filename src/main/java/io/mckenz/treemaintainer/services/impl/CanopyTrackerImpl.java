@@ -0,0 +1,216 @@
+package io.mckenz.treemaintainer.services.impl;
+
+import io.mckenz.treemaintainer.TreeMaintainer;
+import io.mckenz.treemaintainer.models.RemovalPlan;
+import io.mckenz.treemaintainer.models.TaskPolicy;
+import io.mckenz.treemaintainer.models.TreeScan;
+import io.mckenz.treemaintainer.services.CanopyTracker;
+import io.mckenz.treemaintainer.services.LoadSheddingService;
+import io.mckenz.treemaintainer.services.RemovalService;
+import io.mckenz.treemaintainer.services.SchedulerService;
+import io.mckenz.treemaintainer.services.TreeDetectionService;
+import io.mckenz.treemaintainer.utils.BlockKeys;
+import io.mckenz.treemaintainer.utils.LongOpenHashSet;
+import io.mckenz.treemaintainer.utils.TimingWheel;
+import io.mckenz.treemaintainer.world.LiveWorldView;
+
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Implementation of the CanopyTracker interface.
+ * Shortly after a felled tree's cleanup has run, its canopy is swept once: a single leaf plan
+ * removes every leaf that is no longer held up, before the server's random ticks get to them.
+ * While the cleanup of leaves is shed the sweep waits, for at most the decay window. A decay
+ * event for one of the tree's own leaves, found with a precomputed key set, brings the sweep
+ * forward to the next tick, so the rest of the canopy goes with it instead of event by event.
+ */
+public class CanopyTrackerImpl implements CanopyTracker {
+
+    // Ticks after the cleanup before the sweep, so the cleanup's own removals have gone through
+    private static final long SWEEP_DELAY_TICKS = 20;
+    // How long to wait before trying a sweep again while the cleanup of leaves is shed
+    private static final long RETRY_TICKS = 100;
+    // Rough size of a tracked canopy besides its scan and leaf set
+    private static final long CANOPY_BYTES = 96;
+
+    private final TreeMaintainer plugin;
+    private final TreeDetectionService treeDetectionService;
+    private final RemovalService removalService;
+    private final SchedulerService schedulerService;
+    private final LoadSheddingService loadSheddingService;
+    private final Map<UUID, List<Canopy>> canopiesByWorld = new HashMap<>();
+    private int trackedCount;
+
+    public CanopyTrackerImpl(TreeMaintainer plugin, TreeDetectionService treeDetectionService, RemovalService removalService,
+                             SchedulerService schedulerService, LoadSheddingService loadSheddingService) {
+        this.plugin = plugin;
+        this.treeDetectionService = treeDetectionService;
+        this.removalService = removalService;
+        this.schedulerService = schedulerService;
+        this.loadSheddingService = loadSheddingService;
+    }
+
+    /**
+     * A felled tree whose canopy has not been swept yet
+     */
+    private static final class Canopy {
+        private final TreeScan scan;
+        private final LongOpenHashSet leaves;
+        private final long expiresAt;
+        private TimingWheel.Task sweep;
+        private long sweepAt;
+
+        private Canopy(TreeScan scan, long expiresAt) {
+            this.scan = scan;
+            this.expiresAt = expiresAt;
+            this.leaves = new LongOpenHashSet(scan.getLeafCount());
+            for (int i = 0; i < scan.getLeafCount(); i++) {
+                leaves.add(scan.getLeaf(i));
+            }
+        }
+    }
+
+    @Override
+    public void track(TreeScan scan, long delayTicks) {
+        if (!plugin.isDecayInterceptionEnabled() || scan.isEmpty() || scan.getLeafCount() == 0) {
+            return;
+        }
+        long delay = Math.max(0, delayTicks) + SWEEP_DELAY_TICKS;
+        Canopy canopy = new Canopy(scan, schedulerService.getCurrentTick() + delay + plugin.getDecayWindowTicks());
+        canopiesByWorld.computeIfAbsent(scan.getWorldId(), id -> new ArrayList<>()).add(canopy);
+        trackedCount++;
+        scheduleSweep(canopy, delay);
+    }
+
+    @Override
+    public boolean interceptDecay(Block block) {
+        List<Canopy> canopies = canopiesByWorld.get(block.getWorld().getUID());
+        if (canopies == null) {
+            return false;
+        }
+
+        // Leave decay to the server while the cleanup of leaves is shed
+        if (!plugin.isCleanupEnabled() || !loadSheddingService.getLevel().allowsLeafCleanup()) {
+            return false;
+        }
+
+        long key = BlockKeys.pack(block.getX(), block.getY(), block.getZ());
+        for (Canopy canopy : canopies) {
+            if (canopy.leaves.contains(key)) {
+                // The sweep removes this leaf along with the rest of the canopy
+                if (canopy.sweepAt > schedulerService.getCurrentTick() + 1) {
+                    schedulerService.cancel(canopy.sweep);
+                    scheduleSweep(canopy, 1L);
+                }
+                plugin.getMetrics().increment("decay.intercepted");
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int getTrackedCount() {
+        return trackedCount;
+    }
+
+    @Override
+    public long getEstimatedRetainedBytes() {
+        long bytes = 0;
+        for (List<Canopy> canopies : canopiesByWorld.values()) {
+            for (Canopy canopy : canopies) {
+                bytes += CANOPY_BYTES + canopy.scan.getEstimatedBytes() + 16L * canopy.leaves.size();
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public void clearWorld(UUID worldId) {
+        List<Canopy> canopies = canopiesByWorld.remove(worldId);
+        if (canopies == null) {
+            return;
+        }
+        for (Canopy canopy : canopies) {
+            schedulerService.cancel(canopy.sweep);
+        }
+        trackedCount -= canopies.size();
+    }
+
+    @Override
+    public void clear() {
+        for (List<Canopy> canopies : canopiesByWorld.values()) {
+            for (Canopy canopy : canopies) {
+                schedulerService.cancel(canopy.sweep);
+            }
+        }
+        canopiesByWorld.clear();
+        trackedCount = 0;
+    }
+
+    /**
+     * Schedule the sweep of a canopy. If its chunk unloads first, the leaves simply decay later
+     * @param canopy The canopy
+     * @param delay The delay in ticks
+     */
+    private void scheduleSweep(Canopy canopy, long delay) {
+        canopy.sweepAt = schedulerService.getCurrentTick() + delay;
+        canopy.sweep = schedulerService.runLater(() -> sweep(canopy), delay, canopy.scan.getWorldId(),
+                canopy.scan.getOrigin(), TaskPolicy.DROP, () -> remove(canopy));
+    }
+
+    /**
+     * Remove every leaf of a canopy that is no longer held up, or wait while the cleanup of leaves is shed
+     * @param canopy The canopy
+     */
+    private void sweep(Canopy canopy) {
+        World world = plugin.getServer().getWorld(canopy.scan.getWorldId());
+        if (world == null || !plugin.isCleanupEnabled()) {
+            remove(canopy);
+            return;
+        }
+        if (!loadSheddingService.getLevel().allowsLeafCleanup()) {
+            long now = schedulerService.getCurrentTick();
+            if (now + RETRY_TICKS <= canopy.expiresAt) {
+                scheduleSweep(canopy, RETRY_TICKS);
+            } else {
+                remove(canopy);
+            }
+            return;
+        }
+
+        remove(canopy);
+        RemovalPlan plan = treeDetectionService.planLeafRemoval(new LiveWorldView(world), canopy.scan);
+        if (plan.size() == 0) {
+            return;
+        }
+        removalService.submit(plan, null, null).thenAccept(removed -> {
+            if (removed > 0) {
+                // Leaves removed here are leaves the server's random ticks never got to
+                plugin.getMetrics().add("decay.avoided", removed);
+                plugin.debug("Removed " + removed + " leaves left around a felled tree");
+            }
+        });
+    }
+
+    /**
+     * Stop tracking a canopy
+     * @param canopy The canopy
+     */
+    private void remove(Canopy canopy) {
+        List<Canopy> canopies = canopiesByWorld.get(canopy.scan.getWorldId());
+        if (canopies != null && canopies.remove(canopy)) {
+            trackedCount--;
+            if (canopies.isEmpty()) {
+                canopiesByWorld.remove(canopy.scan.getWorldId());
+            }
+        }
+    }
+}
@@ -1,123 +1,340 @@
 package io.mckenz.treemaintainer.services.impl;
 
 import io.mckenz.treemaintainer.TreeMaintainer;
-import io.mckenz.treemaintainer.models.TreeType;
+import io.mckenz.treemaintainer.models.LoadLevel;
+import io.mckenz.treemaintainer.models.RemovalPlan;
+import io.mckenz.treemaintainer.models.TaskPolicy;
+import io.mckenz.treemaintainer.models.TreeScan;
+import io.mckenz.treemaintainer.services.CanopyTracker;
 import io.mckenz.treemaintainer.services.CleanupService;
+import io.mckenz.treemaintainer.services.LoadSheddingService;
+import io.mckenz.treemaintainer.services.RemovalService;
+import io.mckenz.treemaintainer.services.SchedulerService;
 import io.mckenz.treemaintainer.services.TreeDetectionService;
+import io.mckenz.treemaintainer.utils.BlockKeys;
+import io.mckenz.treemaintainer.utils.MaterialClassifier;
+import io.mckenz.treemaintainer.utils.TimingWheel;
+import io.mckenz.treemaintainer.world.LiveWorldView;
 
 import org.bukkit.Material;
-import org.bukkit.block.Block;
-import org.bukkit.inventory.ItemStack;
+import org.bukkit.World;
 
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 
 /**
  * Implementation of the CleanupService interface.
+ * Scheduled cleanups are kept in a grid of chunk columns until they run, so a tree
+ * felled next to one that is still waiting for its cleanup joins that cleanup
+ * instead of scanning the shared canopy a second time.
  */
 public class CleanupServiceImpl implements CleanupService {
 
+    // How long to wait before retrying a cleanup deferred because of server load
+    private static final long DEFER_TICKS = 100;
+    // Cells of the pending cleanup index are one chunk column
+    private static final int CELL_SHIFT = 4;
+    // How far merging may push a cleanup back from when it was first due
+    private static final long MAX_MERGE_DELAY_TICKS = 40;
+    // Widest area one merged cleanup may cover, so a clearing session does not build one huge scan
+    private static final int MAX_MERGED_WIDTH = 64;
+
     private final TreeMaintainer plugin;
     private final TreeDetectionService treeDetectionService;
+    private final RemovalService removalService;
+    private final SchedulerService schedulerService;
+    private final LoadSheddingService loadSheddingService;
+    private final CanopyTracker canopyTracker;
+    private final Map<UUID, Map<Long, List<PendingCleanup>>> pendingByWorld = new HashMap<>();
+    private final List<PendingCleanup> pending = new ArrayList<>();
 
-    public CleanupServiceImpl(TreeMaintainer plugin, TreeDetectionService treeDetectionService) {
+    public CleanupServiceImpl(TreeMaintainer plugin, TreeDetectionService treeDetectionService,
+                              RemovalService removalService, SchedulerService schedulerService,
+                              LoadSheddingService loadSheddingService, CanopyTracker canopyTracker) {
         this.plugin = plugin;
         this.treeDetectionService = treeDetectionService;
+        this.removalService = removalService;
+        this.schedulerService = schedulerService;
+        this.loadSheddingService = loadSheddingService;
+        this.canopyTracker = canopyTracker;
+    }
+
+    /**
+     * A scheduled cleanup, possibly covering several felled trees
+     */
+    private static final class PendingCleanup {
+        private final long firstDueTick;
+        private TreeScan scan;
+        private TimingWheel.Task task;
+        private int trees = 1;
+
+        private PendingCleanup(TreeScan scan, long firstDueTick) {
+            this.scan = scan;
+            this.firstDueTick = firstDueTick;
+        }
+    }
+
+    @Override
+    public void scheduleCleanup(TreeScan scan, long delayTicks) {
+        long delay = Math.max(1, delayTicks);
+        long dueTick = schedulerService.getCurrentTick() + delay;
+        // Leaves the cleanup misses would decay one by one over the next minutes; take that over as well
+        canopyTracker.track(scan, delay);
+        
+        PendingCleanup existing = findOverlapping(scan, dueTick);
+        if (existing != null) {
+            unindex(existing);
+            existing.scan = treeDetectionService.mergeScans(existing.scan, scan);
+            existing.trees++;
+            // Wait for the later tree, so its drops and block updates have settled too
+            if (dueTick > existing.task.getDeadline()) {
+                schedulerService.cancel(existing.task);
+                existing.task = schedule(existing, delay);
+            }
+            index(existing);
+            plugin.getMetrics().increment("cleanup.merged");
+            plugin.debug("Merged cleanup with a pending cleanup now covering " + existing.trees + " trees");
+            return;
+        }
+        
+        PendingCleanup cleanup = new PendingCleanup(scan, dueTick);
+        cleanup.task = schedule(cleanup, delay);
+        pending.add(cleanup);
+        index(cleanup);
+        plugin.getMetrics().increment("cleanup.scheduled");
+    }
+
+    @Override
+    public int getPendingCleanups() {
+        return pending.size();
+    }
+
+    @Override
+    public long getEstimatedRetainedBytes() {
+        long bytes = 0;
+        for (PendingCleanup cleanup : pending) {
+            bytes += cleanup.scan.getEstimatedBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public void clear() {
+        for (PendingCleanup cleanup : pending) {
+            schedulerService.cancel(cleanup.task);
+        }
+        pending.clear();
+        pendingByWorld.clear();
+    }
+
+    /**
+     * Schedule a pending cleanup. It waits while the tree's chunk is unloaded and is forgotten if its world unloads
+     * @param cleanup The pending cleanup
+     * @param delay The delay in ticks
+     * @return The scheduled task
+     */
+    private TimingWheel.Task schedule(PendingCleanup cleanup, long delay) {
+        return schedulerService.runLater(() -> runCleanup(cleanup), delay, cleanup.scan.getWorldId(), cleanup.scan.getOrigin(),
+                TaskPolicy.DEFER, () -> {
+                    unindex(cleanup);
+                    pending.remove(cleanup);
+                });
+    }
+
+    private void runCleanup(PendingCleanup cleanup) {
+        unindex(cleanup);
+        pending.remove(cleanup);
+        try {
+            cleanupFloatingTreeParts(cleanup.scan);
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "Error in scheduled cleanup task: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Find a pending cleanup that a felled tree can join
+     * @param scan The scan of the felled tree
+     * @param dueTick The tick the tree's own cleanup would be due on
+     * @return A pending cleanup of the same tree type whose area touches the tree's, or null if there is none
+     */
+    private PendingCleanup findOverlapping(TreeScan scan, long dueTick) {
+        Map<Long, List<PendingCleanup>> cells = pendingByWorld.get(scan.getWorldId());
+        if (cells == null || scan.getTreeType() == null) {
+            return null;
+        }
+        
+        // Boxes that only touch still share the leaves along their faces
+        for (int cellX = (scan.getMinX() - 1) >> CELL_SHIFT; cellX <= (scan.getMaxX() + 1) >> CELL_SHIFT; cellX++) {
+            for (int cellZ = (scan.getMinZ() - 1) >> CELL_SHIFT; cellZ <= (scan.getMaxZ() + 1) >> CELL_SHIFT; cellZ++) {
+                List<PendingCleanup> candidates = cells.get(cellKey(cellX, cellZ));
+                if (candidates == null) {
+                    continue;
+                }
+                for (PendingCleanup candidate : candidates) {
+                    TreeScan other = candidate.scan;
+                    if (other.getTreeType() == scan.getTreeType()
+                            && dueTick <= candidate.firstDueTick + MAX_MERGE_DELAY_TICKS
+                            && scan.getMinX() <= other.getMaxX() + 1 && other.getMinX() <= scan.getMaxX() + 1
+                            && scan.getMinY() <= other.getMaxY() + 1 && other.getMinY() <= scan.getMaxY() + 1
+                            && scan.getMinZ() <= other.getMaxZ() + 1 && other.getMinZ() <= scan.getMaxZ() + 1
+                            && Math.max(scan.getMaxX(), other.getMaxX()) - Math.min(scan.getMinX(), other.getMinX()) < MAX_MERGED_WIDTH
+                            && Math.max(scan.getMaxZ(), other.getMaxZ()) - Math.min(scan.getMinZ(), other.getMinZ()) < MAX_MERGED_WIDTH) {
+                        return candidate;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private void index(PendingCleanup cleanup) {
+        TreeScan scan = cleanup.scan;
+        Map<Long, List<PendingCleanup>> cells = pendingByWorld.computeIfAbsent(scan.getWorldId(), id -> new HashMap<>());
+        for (int cellX = scan.getMinX() >> CELL_SHIFT; cellX <= scan.getMaxX() >> CELL_SHIFT; cellX++) {
+            for (int cellZ = scan.getMinZ() >> CELL_SHIFT; cellZ <= scan.getMaxZ() >> CELL_SHIFT; cellZ++) {
+                cells.computeIfAbsent(cellKey(cellX, cellZ), key -> new ArrayList<>(2)).add(cleanup);
+            }
+        }
+    }
+
+    private void unindex(PendingCleanup cleanup) {
+        TreeScan scan = cleanup.scan;
+        Map<Long, List<PendingCleanup>> cells = pendingByWorld.get(scan.getWorldId());
+        if (cells == null) {
+            return;
+        }
+        for (int cellX = scan.getMinX() >> CELL_SHIFT; cellX <= scan.getMaxX() >> CELL_SHIFT; cellX++) {
+            for (int cellZ = scan.getMinZ() >> CELL_SHIFT; cellZ <= scan.getMaxZ() >> CELL_SHIFT; cellZ++) {
+                long key = cellKey(cellX, cellZ);
+                List<PendingCleanup> entries = cells.get(key);
+                if (entries != null && entries.remove(cleanup) && entries.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        }
+        if (cells.isEmpty()) {
+            pendingByWorld.remove(scan.getWorldId());
+        }
+    }
+
+    private static long cellKey(int cellX, int cellZ) {
+        return ((long) cellX << 32) | (cellZ & 0xFFFFFFFFL);
     }
 
     @Override
-    public int cleanupFloatingTreeParts(Block startBlock) {
+    public CompletableFuture<Integer> cleanupFloatingTreeParts(TreeScan scan) {
         try {
             if (!plugin.isCleanupEnabled()) {
-                return 0;
+                return CompletableFuture.completedFuture(0);
             }
             
-            // First pass: clean up floating logs
-            int logsRemoved = cleanupFloatingLogs(startBlock);
-            
-            // Second pass: clean up floating leaves
-            int leavesRemoved = cleanupFloatingLeaves(startBlock);
-            
-            // For oak trees, do an additional pass to catch any missed logs
-            TreeType treeType = TreeType.fromLogMaterial(startBlock.getType());
-            if (treeType == TreeType.OAK && plugin.isCleanupLargeTrees()) {
-                // Wait a tick to let the first pass complete
-                plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
-                    int additionalLogs = cleanupFloatingLogs(startBlock);
-                    if (additionalLogs > 0) {
-                        plugin.debug("Second pass removed " + additionalLogs + " additional floating oak logs");
-                    }
-                }, 1L);
+            // Under heavy load, wait for it to drop or give up on the cleanup
+            LoadLevel level = loadSheddingService.getLevel();
+            if (level == LoadLevel.REPLANT_ONLY) {
+                plugin.getMetrics().increment("load.cleanups-dropped");
+                return CompletableFuture.completedFuture(0);
             }
+            if (level == LoadLevel.DEFER_CLEANUP) {
+                plugin.getMetrics().increment("load.cleanups-deferred");
+                CompletableFuture<Integer> deferred = new CompletableFuture<>();
+                schedulerService.runLater(() -> cleanupFloatingTreeParts(scan).thenAccept(deferred::complete), DEFER_TICKS,
+                        scan.getWorldId(), scan.getOrigin(), TaskPolicy.DEFER, () -> deferred.complete(0));
+                return deferred;
+            }
+            
+            // Only search the world again if something else has changed the tree since it was scanned
+            TreeScan currentScan = treeDetectionService.refreshScan(scan, plugin.getCleanupMaxDistance());
             
-            return logsRemoved + leavesRemoved;
+            // First pass: clean up floating logs. The canopy can only be resolved once they are gone
+            return cleanupFloatingLogs(currentScan).thenCompose(logsRemoved -> {
+                // Second pass: clean up floating leaves, unless they are left to decay naturally under load
+                if (!loadSheddingService.getLevel().allowsLeafCleanup()) {
+                    return CompletableFuture.completedFuture(logsRemoved);
+                }
+                return cleanupFloatingLeaves(currentScan).thenApply(leavesRemoved -> logsRemoved + leavesRemoved);
+            });
         } catch (Exception e) {
             plugin.getLogger().log(Level.WARNING, "Error cleaning up floating tree parts: " + e.getMessage(), e);
-            return 0;
+            return CompletableFuture.completedFuture(0);
         }
     }
 
     @Override
-    public int cleanupFloatingLogs(Block startBlock) {
+    public CompletableFuture<Integer> cleanupFloatingLogs(TreeScan scan) {
         try {
             if (!plugin.isCleanupEnabled()) {
-                return 0;
+                return CompletableFuture.completedFuture(0);
             }
             
-            int maxDistance = plugin.getCleanupMaxDistance();
-            Set<Block> floatingLogs = treeDetectionService.findFloatingLogs(startBlock, maxDistance);
+            World world = plugin.getServer().getWorld(scan.getWorldId());
+            if (world == null || scan.getTreeType() == null) {
+                return CompletableFuture.completedFuture(0);
+            }
             
+            MaterialClassifier classifier = plugin.getMaterialClassifier();
+            LiveWorldView view = new LiveWorldView(world);
+            long[] keys = new long[scan.getLogCount()];
+            Material[] types = new Material[scan.getLogCount()];
             int count = 0;
-            for (Block log : floatingLogs) {
-                try {
-                    // Use breakNaturally to respect tool enchantments and maintain original behavior
-                    log.breakNaturally();
-                    count++;
-                } catch (Exception e) {
-                    plugin.getLogger().log(Level.WARNING, "Error cleaning up floating log at " + log.getLocation() + ": " + e.getMessage(), e);
+            for (int i = 0; i < scan.getLogCount(); i++) {
+                long key = scan.getLog(i);
+                if (scan.isGrounded(key)) {
+                    continue;
                 }
+                
+                Material type = view.getType(key);
+                if (classifier.getLogType(type) != scan.getTreeType()) {
+                    continue; // Already gone, or in a chunk that is no longer loaded
+                }
+                keys[count] = key;
+                types[count] = type;
+                count++;
             }
             
-            if (count > 0) {
-                plugin.debug("Cleaned up " + count + " floating logs");
-            }
-            
-            return count;
+            // Use breakNaturally without a tool so floating logs drop as if they had been knocked down
+            RemovalPlan plan = new RemovalPlan(scan, Arrays.copyOf(keys, count), Arrays.copyOf(types, count));
+            return removalService.submit(plan, null, null).thenApply(removed -> {
+                if (removed > 0) {
+                    plugin.debug("Cleaned up " + removed + " floating logs");
+                }
+                return removed;
+            });
         } catch (Exception e) {
             plugin.getLogger().log(Level.WARNING, "Error cleaning up floating logs: " + e.getMessage(), e);
-            return 0;
+            return CompletableFuture.completedFuture(0);
         }
     }
 
     @Override
-    public int cleanupFloatingLeaves(Block startBlock) {
+    public CompletableFuture<Integer> cleanupFloatingLeaves(TreeScan scan) {
         try {
             if (!plugin.isCleanupEnabled()) {
-                return 0;
-            }
-            
-            int maxDistance = plugin.getCleanupMaxDistance();
-            Set<Block> floatingLeaves = treeDetectionService.findFloatingLeaves(startBlock, maxDistance);
-            
-            int count = 0;
-            for (Block leaf : floatingLeaves) {
-                try {
-                    // Use breakNaturally to allow leaves to drop their natural items (saplings, sticks, apples)
-                    leaf.breakNaturally();
-                    count++;
-                } catch (Exception e) {
-                    plugin.getLogger().log(Level.WARNING, "Error cleaning up floating leaf at " + leaf.getLocation() + ": " + e.getMessage(), e);
-                }
+                return CompletableFuture.completedFuture(0);
             }
             
-            if (count > 0) {
-                plugin.debug("Cleaned up " + count + " floating leaves");
+            World world = plugin.getServer().getWorld(scan.getWorldId());
+            if (world == null || scan.getTreeType() == null) {
+                return CompletableFuture.completedFuture(0);
             }
             
-            return count;
+            // Resolve the whole canopy at once, so leaves that would decay are removed now instead of over the next minutes.
+            // Leaves are broken without a tool so they drop their natural items (saplings, sticks, apples)
+            RemovalPlan plan = treeDetectionService.planLeafRemoval(new LiveWorldView(world), scan);
+            return removalService.submit(plan, null, null).thenApply(removed -> {
+                if (removed > 0) {
+                    plugin.debug("Cleaned up " + removed + " floating leaves");
+                }
+                return removed;
+            });
         } catch (Exception e) {
             plugin.getLogger().log(Level.WARNING, "Error cleaning up floating leaves: " + e.getMessage(), e);
-            return 0;
+            return CompletableFuture.completedFuture(0);
         }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,90 @@
+package io.mckenz.treemaintainer.services.impl;
+
+import io.mckenz.treemaintainer.TreeMaintainer;
+import io.mckenz.treemaintainer.models.FellingOperation;
+import io.mckenz.treemaintainer.models.TreeType;
+import io.mckenz.treemaintainer.services.FellingRegistry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Implementation of the FellingRegistry interface.
+ * Only a handful of trees are felled at once, so each world keeps a plain list
+ * of its operations and lookups check their bounding boxes first.
+ */
+public class FellingRegistryImpl implements FellingRegistry {
+
+    // Operations that were never ended, for example after an error, are dropped after this long
+    private static final long OPERATION_TIMEOUT_MILLIS = 60000;
+
+    private final TreeMaintainer plugin;
+    private final Map<UUID, List<FellingOperation>> operationsByWorld = new HashMap<>();
+    private int activeCount;
+
+    public FellingRegistryImpl(TreeMaintainer plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public FellingOperation begin(UUID worldId, TreeType treeType, long origin, UUID playerId) {
+        FellingOperation operation = new FellingOperation(worldId, treeType, origin, playerId);
+        operationsByWorld.computeIfAbsent(worldId, id -> new ArrayList<>()).add(operation);
+        activeCount++;
+        plugin.getMetrics().increment("felling.started");
+        return operation;
+    }
+
+    @Override
+    public FellingOperation find(UUID worldId, long key, TreeType logType) {
+        List<FellingOperation> operations = operationsByWorld.get(worldId);
+        if (operations == null) {
+            return null;
+        }
+        
+        long expiredBefore = System.currentTimeMillis() - OPERATION_TIMEOUT_MILLIS;
+        Iterator<FellingOperation> iterator = operations.iterator();
+        while (iterator.hasNext()) {
+            FellingOperation operation = iterator.next();
+            if (operation.getStartedAt() < expiredBefore) {
+                plugin.debug("Dropping felling operation that never finished at " + operation.getOrigin());
+                iterator.remove();
+                activeCount--;
+                continue;
+            }
+            if (operation.covers(key, logType)) {
+                return operation;
+            }
+        }
+        if (operations.isEmpty()) {
+            operationsByWorld.remove(worldId);
+        }
+        return null;
+    }
+
+    @Override
+    public void end(FellingOperation operation) {
+        List<FellingOperation> operations = operationsByWorld.get(operation.getWorldId());
+        if (operations != null && operations.remove(operation)) {
+            activeCount--;
+            if (operations.isEmpty()) {
+                operationsByWorld.remove(operation.getWorldId());
+            }
+        }
+    }
+
+    @Override
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    @Override
+    public void clear() {
+        operationsByWorld.clear();
+        activeCount = 0;
+    }
+}
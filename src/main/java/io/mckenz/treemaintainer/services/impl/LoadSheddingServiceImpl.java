@@ -0,0 +1,189 @@
+package io.mckenz.treemaintainer.services.impl;
+
+import io.mckenz.treemaintainer.TreeMaintainer;
+import io.mckenz.treemaintainer.models.LoadLevel;
+import io.mckenz.treemaintainer.services.LoadSheddingService;
+import io.mckenz.treemaintainer.services.SchedulerService;
+import io.mckenz.treemaintainer.utils.PerformanceMetrics;
+import io.mckenz.treemaintainer.utils.TimingWheel;
+
+import java.lang.reflect.Method;
+
+/**
+ * Implementation of the LoadSheddingService interface.
+ * Samples every tick and re-evaluates the level once per second. The level rises
+ * as soon as a threshold is crossed, but only falls one level at a time after the
+ * tick time has stayed below the current level's threshold, minus a margin, for
+ * several seconds in a row.
+ */
+public class LoadSheddingServiceImpl implements LoadSheddingService {
+
+    private static final int WINDOW_TICKS = 20;
+    // The length of a tick when the server keeps up
+    private static final double TARGET_TICK_MILLIS = 50.0;
+
+    private final TreeMaintainer plugin;
+    private final SchedulerService schedulerService;
+    // Server#getAverageTickTime is only available on Paper and its forks
+    private final Method averageTickTime;
+    private TimingWheel.Task task;
+    private LoadLevel level = LoadLevel.FULL;
+    private double tickMillis;
+    private double pluginMillis;
+    private long windowStartNanos;
+    private long windowPluginNanos;
+    private int windowTicks;
+    private int calmWindows;
+
+    public LoadSheddingServiceImpl(TreeMaintainer plugin, SchedulerService schedulerService) {
+        this.plugin = plugin;
+        this.schedulerService = schedulerService;
+        this.averageTickTime = findAverageTickTime();
+        this.windowStartNanos = System.nanoTime();
+        this.windowPluginNanos = pluginNanos();
+        this.task = schedulerService.runLater(this::sample, 1L);
+        
+        // Without reported tick times, a level starting at 50 ms or less is reached as soon as ticks run long
+        // at all, so every such level starts at the same moment
+        if (averageTickTime == null && plugin.isLoadSheddingEnabled()
+                && plugin.getLoadNoLeafCleanupMspt() <= TARGET_TICK_MILLIS + 1) {
+            plugin.getLogger().warning("This server does not report tick times (Paper does), so load shedding only sees ticks "
+                    + "longer than 50 ms. Levels with a threshold of 50 ms or less all start together once ticks run long; "
+                    + "set the load-shedding thresholds above 50 ms to keep them apart. The plugin-budget still applies");
+        }
+    }
+
+    @Override
+    public LoadLevel getLevel() {
+        return level;
+    }
+
+    @Override
+    public double getTickMillis() {
+        return tickMillis;
+    }
+
+    @Override
+    public double getPluginMillis() {
+        return pluginMillis;
+    }
+
+    @Override
+    public void shutdown() {
+        if (task != null) {
+            schedulerService.cancel(task);
+            task = null;
+        }
+    }
+
+    private void sample() {
+        task = schedulerService.runLater(this::sample, 1L);
+        if (++windowTicks < WINDOW_TICKS) {
+            return;
+        }
+        
+        long now = System.nanoTime();
+        long pluginNanos = pluginNanos();
+        tickMillis = readTickMillis((now - windowStartNanos) / (double) windowTicks / 1_000_000.0);
+        pluginMillis = (pluginNanos - windowPluginNanos) / (double) windowTicks / 1_000_000.0;
+        windowStartNanos = now;
+        windowPluginNanos = pluginNanos;
+        windowTicks = 0;
+        
+        if (plugin.isLoadSheddingEnabled()) {
+            update();
+        } else if (level != LoadLevel.FULL) {
+            setLevel(LoadLevel.FULL);
+        }
+    }
+
+    private void update() {
+        LoadLevel target = LoadLevel.FULL;
+        for (LoadLevel candidate : LoadLevel.values()) {
+            if (candidate != LoadLevel.FULL && tickMillis >= threshold(candidate)) {
+                target = candidate;
+            }
+        }
+        // The plugin itself taking too long is only worth shedding its most expensive work for
+        boolean overBudget = pluginMillis >= plugin.getLoadPluginBudgetMillis();
+        if (overBudget && target == LoadLevel.FULL) {
+            target = LoadLevel.NO_LEAF_CLEANUP;
+        }
+        
+        if (target.ordinal() > level.ordinal()) {
+            calmWindows = 0;
+            setLevel(target);
+            return;
+        }
+        if (target == level) {
+            calmWindows = 0;
+            return;
+        }
+        
+        // Recover one level at a time once load has stayed clearly below the current level
+        if (tickMillis <= threshold(level) - plugin.getLoadRecoveryMargin() && !overBudget) {
+            calmWindows++;
+        } else {
+            calmWindows = 0;
+        }
+        if (calmWindows >= plugin.getLoadRecoverySeconds()) {
+            calmWindows = 0;
+            setLevel(LoadLevel.values()[level.ordinal() - 1]);
+        }
+    }
+
+    private void setLevel(LoadLevel newLevel) {
+        plugin.getLogger().info(String.format("Server load %s: %s (%.1f ms per tick, %.2f ms used by TreeMaintainer)",
+                newLevel.ordinal() > level.ordinal() ? "rising" : "falling", newLevel.getDisplayName(), tickMillis, pluginMillis));
+        level = newLevel;
+        plugin.getMetrics().increment("load.level-changes");
+    }
+
+    /**
+     * Get the tick time at which a level starts
+     * @param level The level
+     * @return The threshold in milliseconds per tick
+     */
+    private double threshold(LoadLevel level) {
+        switch (level) {
+            case NO_LEAF_CLEANUP:
+                return plugin.getLoadNoLeafCleanupMspt();
+            case DEFER_CLEANUP:
+                return plugin.getLoadDeferCleanupMspt();
+            case REPLANT_ONLY:
+                return plugin.getLoadReplantOnlyMspt();
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Read the server's tick time
+     * @param intervalMillis The measured time between ticks, used when the server does not report tick times
+     * @return The tick time in milliseconds
+     */
+    private double readTickMillis(double intervalMillis) {
+        if (averageTickTime != null) {
+            try {
+                return ((Number) averageTickTime.invoke(plugin.getServer())).doubleValue();
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                plugin.debug("Could not read the server's tick time: " + e.getMessage());
+            }
+        }
+        // Ticks are spaced 50 ms apart while the server keeps up, so only longer ticks can be seen
+        return intervalMillis > TARGET_TICK_MILLIS + 1 ? intervalMillis : 0;
+    }
+
+    private long pluginNanos() {
+        PerformanceMetrics metrics = plugin.getMetrics();
+        return metrics.get("break.handler-nanos") + metrics.get("scheduler.nanos") + metrics.get("removal.nanos");
+    }
+
+    private Method findAverageTickTime() {
+        try {
+            return plugin.getServer().getClass().getMethod("getAverageTickTime");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package io.mckenz.treemaintainer.services.impl;
+
+import io.mckenz.treemaintainer.TreeMaintainer;
+import io.mckenz.treemaintainer.models.TreeScan;
+import io.mckenz.treemaintainer.services.PreScanService;
+import io.mckenz.treemaintainer.services.TreeDetectionService;
+import io.mckenz.treemaintainer.utils.BlockKeys;
+import io.mckenz.treemaintainer.world.LiveWorldView;
+
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+
+/**
+ * Implementation of the PreScanService interface.
+ * Keeps at most one pre-scan per player. A pre-scan that is replaced, expires or
+ * belongs to a player who leaves is counted as wasted.
+ */
+public class PreScanServiceImpl implements PreScanService {
+
+    // How long a pre-scan is kept waiting for its log to break
+    private static final long EXPIRY_MILLIS = 30_000L;
+
+    private final TreeMaintainer plugin;
+    private final TreeDetectionService treeDetectionService;
+    private final Map<UUID, PreScan> preScans = new HashMap<>();
+
+    public PreScanServiceImpl(TreeMaintainer plugin, TreeDetectionService treeDetectionService) {
+        this.plugin = plugin;
+        this.treeDetectionService = treeDetectionService;
+    }
+
+    @Override
+    public void startPreScan(Player player, Block block) {
+        try {
+            World world = block.getWorld();
+            long key = BlockKeys.of(block);
+            
+            // Keep the current pre-scan if the player is still chopping the same log
+            PreScan existing = preScans.get(player.getUniqueId());
+            if (existing != null && existing.matches(world.getUID(), key) && !existing.isExpired()) {
+                return;
+            }
+            discardPreScan(player.getUniqueId());
+            
+            int maxDistance = plugin.getCleanupMaxDistance();
+            CompletableFuture<TreeScan> future;
+            if (plugin.isAsyncDetection()) {
+                future = treeDetectionService.planFellingAsync(world, key, maxDistance)
+                    .thenApplyAsync(plan -> plan.getScan(), plugin.getServer().getScheduler().getMainThreadExecutor(plugin));
+            } else {
+                future = treeDetectionService.scanTreeIncrementally(new LiveWorldView(world), world.getUID(), key, maxDistance);
+            }
+            
+            preScans.put(player.getUniqueId(), new PreScan(world.getUID(), key, future));
+            plugin.getMetrics().increment("prescan.started");
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "Error starting tree pre-scan: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<TreeScan> takePreScan(Player player, Block block) {
+        PreScan preScan = preScans.remove(player.getUniqueId());
+        if (preScan == null) {
+            plugin.getMetrics().increment("prescan.miss");
+            return null;
+        }
+        
+        if (!preScan.matches(block.getWorld().getUID(), BlockKeys.of(block)) || preScan.isExpired()) {
+            waste(preScan);
+            plugin.getMetrics().increment("prescan.miss");
+            return null;
+        }
+        
+        plugin.getMetrics().increment("prescan.hit");
+        if (!preScan.future.isDone()) {
+            // Still scanning; the break handler waits for it instead of starting over
+            plugin.getMetrics().increment("prescan.hit-unfinished");
+        }
+        return preScan.future;
+    }
+
+    @Override
+    public void discardPreScan(UUID playerId) {
+        PreScan preScan = preScans.remove(playerId);
+        if (preScan != null) {
+            waste(preScan);
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (PreScan preScan : preScans.values()) {
+            preScan.future.cancel(false);
+        }
+        preScans.clear();
+    }
+
+    private void waste(PreScan preScan) {
+        // Stops an incremental scan that is still running
+        preScan.future.cancel(false);
+        plugin.getMetrics().increment("prescan.wasted");
+    }
+
+    /**
+     * A scan started for a log a player is chopping
+     */
+    private static final class PreScan {
+        private final UUID worldId;
+        private final long key;
+        private final CompletableFuture<TreeScan> future;
+        private final long startedAt = System.currentTimeMillis();
+
+        private PreScan(UUID worldId, long key, CompletableFuture<TreeScan> future) {
+            this.worldId = worldId;
+            this.key = key;
+            this.future = future;
+        }
+
+        private boolean matches(UUID worldId, long key) {
+            return this.key == key && this.worldId.equals(worldId);
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() - startedAt > EXPIRY_MILLIS;
+        }
+    }
+}
@@ -0,0 +1,512 @@
+package io.mckenz.treemaintainer.services.impl;
+
+import io.mckenz.treemaintainer.TreeMaintainer;
+import io.mckenz.treemaintainer.models.DropMode;
+import io.mckenz.treemaintainer.models.EffectsPolicy;
+import io.mckenz.treemaintainer.models.RemovalPlan;
+import io.mckenz.treemaintainer.models.TreeType;
+import io.mckenz.treemaintainer.services.RemovalService;
+import io.mckenz.treemaintainer.services.SchedulerService;
+import io.mckenz.treemaintainer.utils.BlockKeys;
+import io.mckenz.treemaintainer.utils.DropCollector;
+import io.mckenz.treemaintainer.utils.LeafLoot;
+import io.mckenz.treemaintainer.utils.LongOpenHashSet;
+import io.mckenz.treemaintainer.utils.MaterialClassifier;
+import io.mckenz.treemaintainer.utils.RegionVersions;
+
+import org.bukkit.Effect;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+
+/**
+ * Implementation of the RemovalService interface.
+ * Queued plans are grouped by the player they belong to. Each tick the executor
+ * takes turns between players, and between the trees of each player, breaking a
+ * slice of blocks per turn until the tick's budget is used up. A player felling
+ * a huge tree therefore does not hold up the trees of other players.
+ * A plan that reaches a block in a chunk that is not loaded is set aside until
+ * the chunk loads again, rather than loading it on the main thread.
+ * 
+ * In fast-break mode blocks are not broken naturally. Their drops are worked out
+ * and collected as the plan goes, the blocks are set to air without physics in
+ * top-down, outside-in order, and the drops are spawned at the stump once the plan
+ * is done. This skips the item entity and block update work of every single block. Drops are also collected whenever the drop mode gathers them per
+ * tree, either into a collector shared by the caller or one for the plan alone.
+ * Collected leaves can have their loot rolled in bulk once the plan is done.
+ * Break effects are played by the executor itself, following the effects policy of
+ * the plan's world, so a large tree does not send an effect for every block.
+ */
+public class RemovalServiceImpl implements RemovalService {
+
+    // Blocks broken from one plan before moving on to the next
+    private static final int SLICE_SIZE = 16;
+    // Owner of removals that no player caused
+    private static final UUID NO_OWNER = new UUID(0L, 0L);
+    // How long a plan waits for a chunk to load before skipping the blocks in it
+    private static final long CHUNK_WAIT_TICKS = 600;
+    // Faces that blocks hanging on a removed block, such as cocoa pods and vines, can be attached to
+    private static final BlockFace[] ATTACHMENT_FACES = {BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST, BlockFace.DOWN};
+
+    private final TreeMaintainer plugin;
+    private final RegionVersions regionVersions;
+    private final SchedulerService schedulerService;
+    private final Map<UUID, ArrayDeque<RemovalJob>> jobsByOwner = new HashMap<>();
+    private final ArrayDeque<UUID> owners = new ArrayDeque<>();
+    private final Set<RemovalJob> waitingJobs = new HashSet<>();
+    private int queuedBlocks;
+    private int queuedPlans;
+    private boolean stopped;
+    private BukkitTask task;
+
+    public RemovalServiceImpl(TreeMaintainer plugin, RegionVersions regionVersions, SchedulerService schedulerService) {
+        this.plugin = plugin;
+        this.regionVersions = regionVersions;
+        this.schedulerService = schedulerService;
+    }
+
+    @Override
+    public CompletableFuture<Integer> submit(RemovalPlan plan, ItemStack tool, UUID ownerId) {
+        return submit(plan, tool, ownerId, null);
+    }
+
+    @Override
+    public CompletableFuture<Integer> submit(RemovalPlan plan, ItemStack tool, UUID ownerId, DropCollector drops) {
+        // Callbacks of plans finished during shutdown may try to queue follow-up work
+        if (plan.isEmpty() || stopped) {
+            return CompletableFuture.completedFuture(0);
+        }
+
+        boolean fast = plugin.isFastBreakEnabled();
+        DropCollector collector = drops;
+        if (collector == null && (fast || plugin.getDropMode() != DropMode.NATURAL)) {
+            collector = new DropCollector();
+        }
+        World world = plugin.getServer().getWorld(plan.getWorldId());
+        EffectsPolicy effects = world != null ? plugin.getEffectsPolicy(world) : EffectsPolicy.NONE;
+        RemovalJob job = new RemovalJob(fast ? plan.inRemovalOrder() : plan, tool, ownerId, fast, collector, drops == null, effects);
+        queuedBlocks += plan.size();
+        queuedPlans++;
+        plugin.getMetrics().increment("removal.plans");
+        enqueue(job);
+        return job.future;
+    }
+
+    private void enqueue(RemovalJob job) {
+        ArrayDeque<RemovalJob> jobs = jobsByOwner.get(job.owner);
+        if (jobs == null) {
+            jobs = new ArrayDeque<>();
+            jobsByOwner.put(job.owner, jobs);
+            owners.addLast(job.owner);
+        }
+        jobs.addLast(job);
+
+        if (task == null) {
+            task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+        }
+    }
+
+    /**
+     * Set aside a job that reached a chunk that is not loaded until the chunk loads.
+     * If it does not load in time, the job carries on and skips the blocks it cannot reach.
+     * @param job The waiting job
+     */
+    private void waitForChunk(RemovalJob job) {
+        waitingJobs.add(job);
+        plugin.getMetrics().increment("chunk.removals-suspended");
+        // If the world unloads instead, the job's next run finds it gone and ends the plan
+        Runnable skipUnloaded = () -> {
+            job.skipUnloaded = true;
+            resume(job);
+        };
+        schedulerService.runWhenLoaded(() -> {
+            plugin.getMetrics().increment("chunk.removals-resumed");
+            resume(job);
+        }, job.plan.getWorldId(), job.waitingKey, CHUNK_WAIT_TICKS, skipUnloaded, skipUnloaded);
+    }
+
+    private void resume(RemovalJob job) {
+        if (waitingJobs.remove(job)) {
+            job.waiting = false;
+            enqueue(job);
+        }
+    }
+
+    @Override
+    public int getQueuedBlocks() {
+        return queuedBlocks;
+    }
+
+    @Override
+    public int getQueuedPlans() {
+        return queuedPlans;
+    }
+
+    @Override
+    public long getEstimatedRetainedBytes() {
+        // A packed key and an expected type per block; the plans' scans are counted with the tasks holding them
+        return queuedBlocks * 12L;
+    }
+
+    @Override
+    public void shutdown() {
+        stopped = true;
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+
+        // Finish the trees that were being felled so they are not left floating, without loading any chunks
+        List<RemovalJob> remaining = new ArrayList<>(waitingJobs);
+        for (ArrayDeque<RemovalJob> jobs : jobsByOwner.values()) {
+            remaining.addAll(jobs);
+        }
+        for (RemovalJob job : remaining) {
+            job.skipUnloaded = true;
+            try {
+                job.run(Integer.MAX_VALUE, Long.MAX_VALUE);
+                job.spawnDrops();
+                job.future.complete(job.broken);
+            } catch (Exception e) {
+                // Only a job that could not be finished is abandoned
+                plugin.getLogger().log(Level.WARNING, "Error finishing tree removal: " + e.getMessage(), e);
+                job.future.cancel(false);
+            }
+        }
+        jobsByOwner.clear();
+        waitingJobs.clear();
+        owners.clear();
+        queuedBlocks = 0;
+        queuedPlans = 0;
+    }
+
+    private void tick() {
+        long start = System.nanoTime();
+        try {
+            long deadline = start + plugin.getRemovalBudgetMicros() * 1000L;
+
+            // Every turn breaks at least one block, so the queue always drains
+            while (!owners.isEmpty()) {
+                UUID owner = owners.pollFirst();
+                ArrayDeque<RemovalJob> jobs = jobsByOwner.get(owner);
+                RemovalJob job = jobs.pollFirst();
+
+                int processed = job.run(SLICE_SIZE, deadline);
+                queuedBlocks -= processed;
+
+                if (job.isDone()) {
+                    queuedPlans--;
+                    finish(job);
+                } else if (job.waiting) {
+                    waitForChunk(job);
+                } else {
+                    jobs.addLast(job);
+                }
+
+                // The job's callbacks may have queued more plans for this owner
+                if (jobs.isEmpty()) {
+                    jobsByOwner.remove(owner);
+                } else {
+                    owners.addLast(owner);
+                }
+
+                if (System.nanoTime() >= deadline) {
+                    break;
+                }
+            }
+
+            plugin.getMetrics().increment("removal.ticks");
+            plugin.getMetrics().add("removal.nanos", System.nanoTime() - start);
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "Error breaking queued blocks: " + e.getMessage(), e);
+        }
+
+        if (owners.isEmpty() && task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    private void finish(RemovalJob job) {
+        if (job.skipped > 0) {
+            plugin.debug("Skipped " + job.skipped + " blocks that changed since the removal plan was made");
+            plugin.getMetrics().add("removal.skipped-changed", job.skipped);
+        }
+        if (job.unloaded > 0) {
+            plugin.debug("Skipped " + job.unloaded + " blocks in chunks that did not load again");
+            plugin.getMetrics().add("chunk.removals-skipped", job.unloaded);
+        }
+        try {
+            job.spawnDrops();
+            job.playSummaryEffect();
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "Error spawning tree drops: " + e.getMessage(), e);
+        }
+        
+        // Time per path and tree type, so the two ways of removing blocks can be compared on real trees
+        TreeType treeType = job.plan.getScan().getTreeType();
+        String prefix = "removal." + (job.fast ? "fast." : "natural.") + (treeType != null ? treeType.getConfigName() : "other");
+        plugin.getMetrics().add(prefix + ".blocks", job.broken);
+        plugin.getMetrics().add(prefix + ".nanos", job.nanos);
+        plugin.getMetrics().add("removal.blocks", job.broken);
+        job.future.complete(job.broken);
+    }
+
+    /**
+     * A removal plan being worked through
+     */
+    private final class RemovalJob {
+        private final RemovalPlan plan;
+        private final ItemStack tool;
+        private final UUID owner;
+        private final UUID playerId;
+        private final boolean fast;
+        private final DropCollector drops;
+        private final boolean ownsDrops;
+        private final int[] leavesByType;
+        private final EffectsPolicy effects;
+        private final int effectStride;
+        private final CompletableFuture<Integer> future = new CompletableFuture<>();
+        // Chunks whose version has been bumped during the current slice
+        private final LongOpenHashSet changedChunks = new LongOpenHashSet(4);
+        private long lastBrokenKey;
+        private long nanos;
+        private int next;
+        private int broken;
+        private int skipped;
+        private int unloaded;
+        private boolean waiting;
+        private long waitingKey;
+        private boolean skipUnloaded;
+
+        private RemovalJob(RemovalPlan plan, ItemStack tool, UUID playerId, boolean fast, DropCollector drops, boolean ownsDrops,
+                           EffectsPolicy effects) {
+            this.plan = plan;
+            this.tool = tool;
+            this.owner = playerId != null ? playerId : NO_OWNER;
+            this.playerId = playerId;
+            this.fast = fast;
+            this.drops = drops;
+            this.ownsDrops = ownsDrops;
+            this.leavesByType = drops != null && plugin.isBulkLeafLoot() ? new int[TreeType.values().length] : null;
+            this.effects = effects;
+            // Sampled effects are spread evenly over the plan
+            int sampleSize = plugin.getEffectsSampleSize();
+            this.effectStride = effects == EffectsPolicy.SAMPLE ? Math.max(1, (plan.size() + sampleSize - 1) / sampleSize) : 1;
+            this.lastBrokenKey = plan.getScan().getOrigin();
+        }
+
+        private boolean isDone() {
+            return next >= plan.size();
+        }
+
+        /**
+         * Break the next blocks of the plan, skipping any block whose type has changed since the plan was made.
+         * Stops at a block in a chunk that is not loaded and marks the job as waiting, unless such blocks are skipped.
+         * @param limit The maximum number of blocks to process
+         * @param deadline The {@link System#nanoTime()} after which to stop
+         * @return The number of blocks processed, which is at least one unless the plan is done or waiting
+         */
+        private int run(int limit, long deadline) {
+            World world = plugin.getServer().getWorld(plan.getWorldId());
+            if (world == null) {
+                // The world was unloaded; nothing left to break
+                int remaining = plan.size() - next;
+                next = plan.size();
+                return remaining;
+            }
+
+            long start = System.nanoTime();
+            changedChunks.clear();
+            int processed = 0;
+            int lastChunkX = 0;
+            int lastChunkZ = 0;
+            boolean chunkLoaded = false;
+            while (!isDone() && processed < limit) {
+                long key = plan.getKey(next);
+                int chunkX = BlockKeys.x(key) >> 4;
+                int chunkZ = BlockKeys.z(key) >> 4;
+                if (processed == 0 || chunkX != lastChunkX || chunkZ != lastChunkZ) {
+                    lastChunkX = chunkX;
+                    lastChunkZ = chunkZ;
+                    chunkLoaded = world.isChunkLoaded(chunkX, chunkZ);
+                }
+                if (!chunkLoaded && !skipUnloaded) {
+                    waiting = true;
+                    waitingKey = key;
+                    break;
+                }
+                
+                Block block = chunkLoaded ? world.getBlockAt(BlockKeys.x(key), BlockKeys.y(key), BlockKeys.z(key)) : null;
+                if (block == null) {
+                    unloaded++;
+                } else if (block.getType() != plan.getExpectedType(next)) {
+                    skipped++;
+                } else {
+                    try {
+                        playEffect(world, block, plan.getExpectedType(next));
+                        if (drops != null) {
+                            removeCollectingDrops(world, block, key, plan.getExpectedType(next));
+                        } else if (tool != null) {
+                            block.breakNaturally(tool);
+                        } else {
+                            block.breakNaturally();
+                        }
+                        markChanged(block.getX(), block.getZ());
+                        broken++;
+                    } catch (Exception e) {
+                        plugin.getLogger().log(Level.WARNING, "Error breaking block at " + block.getLocation() + ": " + e.getMessage(), e);
+                    }
+                }
+                next++;
+                processed++;
+
+                if (System.nanoTime() >= deadline) {
+                    break;
+                }
+            }
+            nanos += System.nanoTime() - start;
+            return processed;
+        }
+
+        /**
+         * Record a block removed by the plan, so scans covering its chunk know they are out of date.
+         * Breaking blocks from code fires no block events, so nothing else records these changes
+         * @param x The block X coordinate
+         * @param z The block Z coordinate
+         */
+        private void markChanged(int x, int z) {
+            if (changedChunks.add(((long) (x >> 4) << 32) | ((z >> 4) & 0xFFFFFFFFL))) {
+                regionVersions.markChanged(plan.getWorldId(), x, z);
+            }
+        }
+
+        /**
+         * Show the break effect of a block if the effects policy picks it
+         * @param world The world of the block
+         * @param block The block about to be removed
+         * @param type The type of the block
+         */
+        private void playEffect(World world, Block block, Material type) {
+            if (effects == EffectsPolicy.FULL || (effects == EffectsPolicy.SAMPLE && next % effectStride == 0)) {
+                world.playEffect(block.getLocation(), Effect.STEP_SOUND, type);
+                plugin.getMetrics().increment("effects.played");
+            } else {
+                plugin.getMetrics().increment("effects.suppressed");
+            }
+        }
+
+        /**
+         * Show a single break effect at the stump for a tree felled by a player under the summary policy
+         */
+        private void playSummaryEffect() {
+            if (effects != EffectsPolicy.SUMMARY || playerId == null || broken == 0) {
+                return;
+            }
+            World world = plugin.getServer().getWorld(plan.getWorldId());
+            long key = plan.getScan().getOrigin();
+            if (world == null || !world.isChunkLoaded(BlockKeys.x(key) >> 4, BlockKeys.z(key) >> 4)) {
+                return;
+            }
+            Location location = world.getBlockAt(BlockKeys.x(key), BlockKeys.y(key), BlockKeys.z(key)).getLocation();
+            world.playEffect(location, Effect.STEP_SOUND, plan.getExpectedType(0));
+            plugin.getMetrics().increment("effects.played");
+        }
+
+        /**
+         * Collect a block's drops and set it to air. In fast-break mode this skips physics
+         * @param world The world of the block
+         * @param block The block to remove
+         * @param key The packed key of the block
+         * @param type The type of the block
+         */
+        private void removeCollectingDrops(World world, Block block, long key, Material type) {
+            MaterialClassifier classifier = plugin.getMaterialClassifier();
+            TreeType leafType = classifier.getLeafType(type);
+            if (classifier.isAnyLog(type)) {
+                // Logs always drop themselves, so their loot does not need to be worked out block by block
+                drops.add(type, 1);
+            } else if (leafType != null && leavesByType != null) {
+                // Leaves are only counted; their loot is rolled for all of them at once when the plan is done
+                leavesByType[leafType.ordinal()]++;
+            } else {
+                for (ItemStack drop : tool != null ? block.getDrops(tool) : block.getDrops()) {
+                    drops.add(drop);
+                }
+            }
+            block.setType(Material.AIR, !fast);
+            lastBrokenKey = key;
+            if (!fast) {
+                return;
+            }
+            
+            // Without physics, cocoa pods and vines on the block would be left floating, so break them properly
+            int chunkX = block.getX() >> 4;
+            int chunkZ = block.getZ() >> 4;
+            for (BlockFace face : ATTACHMENT_FACES) {
+                int x = block.getX() + face.getModX();
+                int z = block.getZ() + face.getModZ();
+                if ((x >> 4 != chunkX || z >> 4 != chunkZ) && !world.isChunkLoaded(x >> 4, z >> 4)) {
+                    continue;
+                }
+                Block attached = block.getRelative(face);
+                Material attachedType = attached.getType();
+                if (attachedType == Material.COCOA || attachedType == Material.VINE) {
+                    attached.breakNaturally();
+                    markChanged(x, z);
+                }
+            }
+        }
+
+        /**
+         * Roll the loot of the counted leaves, then hand out the drops collected for this plan alone,
+         * at the stump, or to the player in inventory mode
+         */
+        private void spawnDrops() {
+            if (drops != null && leavesByType != null) {
+                int leaves = 0;
+                for (TreeType treeType : TreeType.values()) {
+                    leaves += leavesByType[treeType.ordinal()];
+                    LeafLoot.roll(treeType, leavesByType[treeType.ordinal()], tool, drops, ThreadLocalRandom.current());
+                    leavesByType[treeType.ordinal()] = 0;
+                }
+                plugin.getMetrics().add("drops.bulk-leaves", leaves);
+            }
+            if (drops == null || !ownsDrops || drops.isEmpty()) {
+                return;
+            }
+            World world = plugin.getServer().getWorld(plan.getWorldId());
+            if (world == null) {
+                return;
+            }
+            
+            // Drop at the stump, or where the last block was removed if the stump's chunk has unloaded
+            long key = plan.getScan().getOrigin();
+            if (!world.isChunkLoaded(BlockKeys.x(key) >> 4, BlockKeys.z(key) >> 4)) {
+                key = lastBrokenKey;
+            }
+            Player player = plugin.getDropMode() == DropMode.INVENTORY && playerId != null ? plugin.getServer().getPlayer(playerId) : null;
+            int items = drops.getItemCount();
+            int spawned = drops.deliver(world, key, player);
+            plugin.getMetrics().add("drops.items", items);
+            plugin.getMetrics().add("drops.entities", spawned);
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package io.mckenz.treemaintainer.services.impl;
 
 import io.mckenz.treemaintainer.TreeMaintainer;
+import io.mckenz.treemaintainer.models.TaskPolicy;
 import io.mckenz.treemaintainer.models.TreeType;
 import io.mckenz.treemaintainer.services.ReplantingService;
+import io.mckenz.treemaintainer.services.SchedulerService;
+import io.mckenz.treemaintainer.utils.BlockKeys;
 
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.bukkit.entity.Item;
@@ -15,6 +19,7 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 import java.util.logging.Level;
 
 /**
@@ -23,15 +28,17 @@ import java.util.logging.Level;
 public class ReplantingServiceImpl implements ReplantingService {
 
     private final TreeMaintainer plugin;
+    private final SchedulerService schedulerService;
 
-    public ReplantingServiceImpl(TreeMaintainer plugin) {
+    public ReplantingServiceImpl(TreeMaintainer plugin, SchedulerService schedulerService) {
         this.plugin = plugin;
+        this.schedulerService = schedulerService;
     }
 
     @Override
     public boolean canPlantSapling(Location location, Material logType) {
         try {
-            TreeType treeType = TreeType.fromLogMaterial(logType);
+            TreeType treeType = plugin.getMaterialClassifier().getLogType(logType);
             if (treeType == null) {
                 return false;
             }
@@ -48,15 +55,7 @@ public class ReplantingServiceImpl implements ReplantingService {
             Block below = block.getRelative(BlockFace.DOWN);
             Material belowType = below.getType();
             
-            boolean validSurface = belowType == Material.DIRT || 
-                                   belowType == Material.GRASS_BLOCK || 
-                                   belowType == Material.PODZOL || 
-                                   belowType == Material.COARSE_DIRT || 
-                                   belowType == Material.ROOTED_DIRT || 
-                                   belowType == Material.MOSS_BLOCK || 
-                                   belowType == Material.MUD;
-            
-            if (!validSurface) {
+            if (!plugin.getMaterialClassifier().isSoil(belowType)) {
                 plugin.debug("Cannot plant sapling: Invalid surface below - " + belowType);
                 return false;
             }
@@ -76,7 +75,7 @@ public class ReplantingServiceImpl implements ReplantingService {
     @Override
     public boolean plantSapling(Location location, Material logType) {
         try {
-            TreeType treeType = TreeType.fromLogMaterial(logType);
+            TreeType treeType = plugin.getMaterialClassifier().getLogType(logType);
             if (treeType == null) {
                 plugin.debug("Cannot plant sapling: Unknown tree type for " + logType);
                 return false;
@@ -128,14 +127,20 @@ public class ReplantingServiceImpl implements ReplantingService {
             
             plugin.debug("Scheduling replanting of " + logType + " at " + location + " with delay " + delay);
             
-            // Schedule the replanting task
-            plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
+            // Schedule the replanting task. Only the world and packed position are kept until it runs,
+            // and the sapling is still planted if the chunk unloads in the meantime or the server stops
+            UUID worldId = location.getWorld().getUID();
+            long key = BlockKeys.of(location.getBlock());
+            schedulerService.runLater(() -> {
                 try {
-                    plantSapling(location, logType);
+                    World world = plugin.getServer().getWorld(worldId);
+                    if (world != null) {
+                        plantSapling(world.getBlockAt(BlockKeys.x(key), BlockKeys.y(key), BlockKeys.z(key)).getLocation(), logType);
+                    }
                 } catch (Exception e) {
                     plugin.getLogger().log(Level.WARNING, "Error in scheduled replanting task: " + e.getMessage(), e);
                 }
-            }, delay);
+            }, delay, worldId, key, TaskPolicy.PERSIST, null);
         } catch (Exception e) {
             plugin.getLogger().log(Level.WARNING, "Error scheduling replanting: " + e.getMessage(), e);
         }
@@ -0,0 +1,247 @@
+package io.mckenz.treemaintainer.services.impl;
+
+import io.mckenz.treemaintainer.models.TreeScan;
+import io.mckenz.treemaintainer.models.TreeType;
+import io.mckenz.treemaintainer.utils.BlockKeys;
+import io.mckenz.treemaintainer.utils.LongOpenHashSet;
+import io.mckenz.treemaintainer.utils.LongRingDeque;
+import io.mckenz.treemaintainer.utils.ScanWorkspace;
+import io.mckenz.treemaintainer.world.VoxelView;
+
+import java.util.UUID;
+
+/**
+ * A tree scan that can be run in steps.
+ * Each step searches until it has visited a number of blocks or used up a time
+ * budget, then keeps its frontier so the next step, usually on the next tick,
+ * carries on where it stopped. When the search is done the logs are classified
+ * and the result is available from {@link #getResult()}.
+ */
+public final class ScanJob implements AutoCloseable {
+
+    // How many logs to expand between clock reads
+    private static final int CLOCK_INTERVAL = 32;
+
+    private final TreeScanner scanner;
+    private final VoxelView view;
+    private final UUID worldId;
+    private final TreeType treeType;
+    private final long origin;
+    private final int maxLogs;
+    private final TreeScan previous;
+    private final ScanWorkspace workspace;
+    private final long[] deltas;
+    private final LongRingDeque logs = new LongRingDeque(64);
+    private boolean reachedEdge;
+    private boolean waitForChunks;
+    private boolean waiting;
+    private long waitingKey;
+    private boolean closed;
+    private int steps;
+    private TreeScan result;
+
+    ScanJob(TreeScanner scanner, VoxelView view, UUID worldId, TreeType treeType, long origin,
+            LongRingDeque seeds, int maxLogs, TreeScan previous, ScanWorkspace workspace) {
+        this.scanner = scanner;
+        this.view = view;
+        this.worldId = worldId;
+        this.treeType = treeType;
+        this.origin = origin;
+        this.maxLogs = maxLogs;
+        this.previous = previous;
+        this.workspace = workspace;
+        this.deltas = scanner.getSearchDeltas(treeType);
+
+        LongOpenHashSet visited = workspace.visited();
+        LongRingDeque queue = workspace.queue();
+        for (int i = 0; i < seeds.size(); i++) {
+            long seed = seeds.get(i);
+            if (visited.add(seed) && scanner.isLog(view, seed, treeType)) {
+                queue.addLast(seed);
+            }
+        }
+    }
+
+    private ScanJob(TreeScan result) {
+        this.scanner = null;
+        this.view = null;
+        this.worldId = result.getWorldId();
+        this.treeType = null;
+        this.origin = result.getOrigin();
+        this.maxLogs = 0;
+        this.previous = null;
+        this.workspace = null;
+        this.deltas = null;
+        this.result = result;
+    }
+
+    /**
+     * Create a job that has already finished
+     * @param result The result of the job
+     * @return The finished job
+     */
+    static ScanJob finished(TreeScan result) {
+        return new ScanJob(result);
+    }
+
+    /**
+     * Choose what happens when the search reaches a chunk that is not loaded. By default the
+     * chunk is treated as the edge of the search and the scan is marked as truncated.
+     * @param waitForChunks True to pause the search instead, see {@link #isWaitingForChunk()}
+     */
+    public void setWaitForChunks(boolean waitForChunks) {
+        this.waitForChunks = waitForChunks;
+    }
+
+    /**
+     * Check whether the last step stopped because the search reached a chunk that is not loaded
+     * @return True if the job is waiting for the chunk of {@link #getWaitingKey()} to load
+     */
+    public boolean isWaitingForChunk() {
+        return waiting;
+    }
+
+    /**
+     * Get a position in the chunk the job is waiting for
+     * @return The packed key
+     */
+    public long getWaitingKey() {
+        return waitingKey;
+    }
+
+    /**
+     * Continue the search.
+     * At least one log is expanded per step, so every step makes progress,
+     * unless the job is set to wait for chunks and stops at one that is not loaded.
+     * @param blockBudget The maximum number of new blocks to visit in this step
+     * @param nanoBudget The maximum time to spend in this step, in nanoseconds
+     * @return True if the scan has finished and its result is available
+     */
+    public boolean step(int blockBudget, long nanoBudget) {
+        if (result != null) {
+            return true;
+        }
+        if (closed) {
+            throw new IllegalStateException("Scan job has been closed");
+        }
+        steps++;
+        waiting = false;
+
+        LongOpenHashSet visited = workspace.visited();
+        LongRingDeque queue = workspace.queue();
+        long start = System.nanoTime();
+        int visitedBlocks = 0;
+        int expanded = 0;
+
+        // Only logs are queued, so every block taken from the queue belongs to the tree
+        while (!queue.isEmpty() && logs.size() < maxLogs) {
+            if (expanded > 0) {
+                if (visitedBlocks >= blockBudget) {
+                    return false;
+                }
+                if (expanded % CLOCK_INTERVAL == 0 && System.nanoTime() - start >= nanoBudget) {
+                    return false;
+                }
+            }
+
+            long current = queue.pollFirst();
+            if (waitForChunks && reachesUnloadedChunk(current)) {
+                // Come back to this log once the chunk is loaded, rather than loading it now
+                queue.addFirst(current);
+                waiting = true;
+                return false;
+            }
+            logs.addLast(current);
+            expanded++;
+
+            for (long delta : deltas) {
+                long neighbour = current + delta;
+                if (visited.add(neighbour)) {
+                    visitedBlocks++;
+                    if (!view.contains(neighbour) || !view.isLoaded(neighbour)) {
+                        reachedEdge = true;
+                    } else if (scanner.isLog(view, neighbour, treeType)) {
+                        queue.addLast(neighbour);
+                    }
+                }
+            }
+        }
+
+        boolean truncated = logs.size() >= maxLogs || reachedEdge;
+        result = scanner.classify(view, worldId, treeType, origin, logs, truncated, previous, workspace);
+        close();
+        return true;
+    }
+
+    /**
+     * Check whether any neighbour searched around a log lies in a chunk that is not loaded
+     * @param key The packed key of the log
+     * @return True if such a neighbour was found; its key is kept as the waiting key
+     */
+    private boolean reachesUnloadedChunk(long key) {
+        int chunkX = BlockKeys.x(key) >> 4;
+        int chunkZ = BlockKeys.z(key) >> 4;
+        for (long delta : deltas) {
+            long neighbour = key + delta;
+            // Only neighbours across a chunk border need checking; the log's own chunk is loaded
+            if ((BlockKeys.x(neighbour) >> 4 != chunkX || BlockKeys.z(neighbour) >> 4 != chunkZ)
+                    && view.contains(neighbour) && !view.isLoaded(neighbour)) {
+                waitingKey = neighbour;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isDone() {
+        return result != null;
+    }
+
+    /**
+     * Get the result of the scan
+     * @return The scan, or null if the job has not finished
+     */
+    public TreeScan getResult() {
+        return result;
+    }
+
+    public UUID getWorldId() {
+        return worldId;
+    }
+
+    /**
+     * Get the packed key of the block the scan started from
+     * @return The origin key
+     */
+    public long getOrigin() {
+        return origin;
+    }
+
+    /**
+     * Get the number of steps the job has run
+     * @return The step count
+     */
+    public int getSteps() {
+        return steps;
+    }
+
+    /**
+     * Get the number of logs found so far
+     * @return The log count
+     */
+    public int getLogCount() {
+        return result != null ? result.getLogCount() : logs.size();
+    }
+
+    /**
+     * Release the job's scratch space. Called automatically when the job finishes,
+     * and must be called if an unfinished job is abandoned.
+     */
+    @Override
+    public void close() {
+        if (workspace != null && !closed) {
+            closed = true;
+            workspace.close();
+        }
+    }
+}
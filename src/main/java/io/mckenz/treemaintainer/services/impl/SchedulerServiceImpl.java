@@ -0,0 +1,330 @@
+package io.mckenz.treemaintainer.services.impl;
+
+import io.mckenz.treemaintainer.TreeMaintainer;
+import io.mckenz.treemaintainer.models.TaskPolicy;
+import io.mckenz.treemaintainer.services.SchedulerService;
+import io.mckenz.treemaintainer.utils.BlockKeys;
+import io.mckenz.treemaintainer.utils.TimingWheel;
+
+import org.bukkit.World;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+
+/**
+ * Implementation of the SchedulerService interface.
+ * One repeating task advances a timing wheel every tick and runs the tasks that are due.
+ * Tasks about a block position are also indexed by world and chunk, so they can be held,
+ * resumed or discarded as chunks and worlds come and go.
+ */
+public class SchedulerServiceImpl implements SchedulerService {
+
+    // Rough size of a wheel task and the lambda it runs
+    private static final long TASK_BYTES = 96;
+    // Rough extra size of a task registered with a position, including its index entries
+    private static final long TRACKED_TASK_BYTES = 160;
+
+    private final TreeMaintainer plugin;
+    private final TimingWheel wheel = new TimingWheel();
+    private final Map<TimingWheel.Task, TrackedTask> tracked = new IdentityHashMap<>();
+    private final Map<UUID, Map<Long, List<TrackedTask>>> trackedByChunk = new HashMap<>();
+    private int heldCount;
+    private BukkitTask task;
+
+    public SchedulerServiceImpl(TreeMaintainer plugin) {
+        this.plugin = plugin;
+        this.task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+    }
+
+    /**
+     * A task registered with the block position it works on
+     */
+    private static final class TrackedTask {
+        private final UUID worldId;
+        private final long key;
+        private final long chunkKey;
+        private final TaskPolicy policy;
+        private final Runnable action;
+        private final Runnable onDropped;
+        private final Runnable onWorldUnloaded;
+        private TimingWheel.Task wheelTask;
+        private TimingWheel.Task timeout;
+        private long remainingTicks;
+        private boolean held;
+
+        private TrackedTask(UUID worldId, long key, TaskPolicy policy, Runnable action, Runnable onDropped, Runnable onWorldUnloaded) {
+            this.worldId = worldId;
+            this.key = key;
+            this.chunkKey = chunkKey(BlockKeys.x(key) >> 4, BlockKeys.z(key) >> 4);
+            this.policy = policy;
+            this.action = action;
+            this.onDropped = onDropped;
+            this.onWorldUnloaded = onWorldUnloaded;
+        }
+    }
+
+    @Override
+    public TimingWheel.Task runLater(Runnable task, long delayTicks) {
+        return wheel.schedule(task, delayTicks);
+    }
+
+    @Override
+    public TimingWheel.Task runLater(Runnable task, long delayTicks, UUID worldId, long key, TaskPolicy policy, Runnable onDropped) {
+        TrackedTask entry = new TrackedTask(worldId, key, policy, task, onDropped, onDropped);
+        entry.wheelTask = wheel.schedule(() -> {
+            untrack(entry);
+            entry.action.run();
+        }, delayTicks);
+
+        // A chunk that is already gone sends no unload event, so apply the policy now
+        World world = plugin.getServer().getWorld(worldId);
+        if (world == null) {
+            wheel.cancel(entry.wheelTask);
+            drop(entry, entry.onDropped);
+            return entry.wheelTask;
+        }
+        if (!world.isChunkLoaded(BlockKeys.x(key) >> 4, BlockKeys.z(key) >> 4)) {
+            wheel.cancel(entry.wheelTask);
+            if (policy == TaskPolicy.DROP) {
+                drop(entry, entry.onDropped);
+                return entry.wheelTask;
+            }
+            entry.held = true;
+            entry.remainingTicks = delayTicks;
+            heldCount++;
+            plugin.getMetrics().increment("scheduler.held");
+        }
+        track(entry);
+        return entry.wheelTask;
+    }
+
+    @Override
+    public TimingWheel.Task runWhenLoaded(Runnable task, UUID worldId, long key, long timeoutTicks, Runnable onTimeout,
+                                          Runnable onWorldUnloaded) {
+        TrackedTask entry = new TrackedTask(worldId, key, TaskPolicy.DEFER, task, onTimeout, onWorldUnloaded);
+        entry.wheelTask = wheel.schedule(() -> {
+            untrack(entry);
+            entry.action.run();
+        }, 1L);
+        
+        // Held from the start; loading the chunk puts it on the wheel for the next tick
+        wheel.cancel(entry.wheelTask);
+        entry.held = true;
+        entry.remainingTicks = 1L;
+        heldCount++;
+        track(entry);
+        
+        entry.timeout = wheel.schedule(() -> {
+            if (tracked.get(entry.wheelTask) == entry) {
+                untrack(entry);
+                plugin.getMetrics().increment("scheduler.timeouts");
+                entry.onDropped.run();
+            }
+        }, timeoutTicks);
+        return entry.wheelTask;
+    }
+
+    @Override
+    public boolean cancel(TimingWheel.Task task) {
+        TrackedTask entry = tracked.get(task);
+        if (entry != null) {
+            boolean held = entry.held;
+            untrack(entry);
+            if (held) {
+                // Held tasks are already off the wheel
+                return true;
+            }
+        }
+        return wheel.cancel(task);
+    }
+
+    @Override
+    public void chunkUnloaded(UUID worldId, int chunkX, int chunkZ) {
+        List<TrackedTask> entries = getChunkTasks(worldId, chunkX, chunkZ);
+        if (entries == null) {
+            return;
+        }
+
+        for (TrackedTask entry : new ArrayList<>(entries)) {
+            if (entry.held) {
+                continue;
+            }
+            if (entry.policy == TaskPolicy.DROP) {
+                wheel.cancel(entry.wheelTask);
+                untrack(entry);
+                drop(entry, entry.onDropped);
+            } else {
+                entry.remainingTicks = entry.wheelTask.getDeadline() - wheel.getCurrentTick();
+                wheel.cancel(entry.wheelTask);
+                entry.held = true;
+                heldCount++;
+                plugin.getMetrics().increment("scheduler.held");
+            }
+        }
+    }
+
+    @Override
+    public void chunkLoaded(UUID worldId, int chunkX, int chunkZ) {
+        List<TrackedTask> entries = getChunkTasks(worldId, chunkX, chunkZ);
+        if (entries == null) {
+            return;
+        }
+
+        for (TrackedTask entry : entries) {
+            if (entry.held) {
+                entry.held = false;
+                heldCount--;
+                wheel.reschedule(entry.wheelTask, entry.remainingTicks);
+                if (entry.timeout != null) {
+                    wheel.cancel(entry.timeout);
+                    entry.timeout = null;
+                }
+                plugin.getMetrics().increment("scheduler.resumed");
+            }
+        }
+    }
+
+    @Override
+    public void worldUnloaded(UUID worldId) {
+        Map<Long, List<TrackedTask>> chunks = trackedByChunk.remove(worldId);
+        if (chunks == null) {
+            return;
+        }
+
+        for (List<TrackedTask> entries : chunks.values()) {
+            for (TrackedTask entry : entries) {
+                tracked.remove(entry.wheelTask);
+                if (entry.held) {
+                    heldCount--;
+                } else {
+                    wheel.cancel(entry.wheelTask);
+                }
+                if (entry.timeout != null) {
+                    wheel.cancel(entry.timeout);
+                }
+                drop(entry, entry.onWorldUnloaded);
+            }
+        }
+    }
+
+    @Override
+    public int getPendingTasks() {
+        return wheel.size() + heldCount;
+    }
+
+    @Override
+    public int getHeldTasks() {
+        return heldCount;
+    }
+
+    @Override
+    public long getEstimatedRetainedBytes() {
+        return (wheel.size() + heldCount) * TASK_BYTES + tracked.size() * TRACKED_TASK_BYTES;
+    }
+
+    @Override
+    public long getCurrentTick() {
+        return wheel.getCurrentTick();
+    }
+
+    @Override
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+
+        // Finish work that should not be lost, such as replanting, while its chunk is still loaded
+        List<TrackedTask> persisted = new ArrayList<>();
+        for (TrackedTask entry : tracked.values()) {
+            if (entry.policy == TaskPolicy.PERSIST && !entry.held) {
+                persisted.add(entry);
+            }
+        }
+        wheel.clear();
+        tracked.clear();
+        trackedByChunk.clear();
+        heldCount = 0;
+
+        for (TrackedTask entry : persisted) {
+            World world = plugin.getServer().getWorld(entry.worldId);
+            if (world == null || !world.isChunkLoaded(BlockKeys.x(entry.key) >> 4, BlockKeys.z(entry.key) >> 4)) {
+                continue;
+            }
+            try {
+                entry.action.run();
+            } catch (Exception e) {
+                plugin.getLogger().log(Level.WARNING, "Error finishing scheduled task: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void tick() {
+        long start = System.nanoTime();
+        int ran = wheel.advance(e ->
+            plugin.getLogger().log(Level.WARNING, "Error in scheduled task: " + e.getMessage(), e));
+        if (ran > 0) {
+            plugin.getMetrics().add("scheduler.dispatched", ran);
+            plugin.getMetrics().add("scheduler.nanos", System.nanoTime() - start);
+        }
+    }
+
+    private List<TrackedTask> getChunkTasks(UUID worldId, int chunkX, int chunkZ) {
+        Map<Long, List<TrackedTask>> chunks = trackedByChunk.get(worldId);
+        return chunks != null ? chunks.get(chunkKey(chunkX, chunkZ)) : null;
+    }
+
+    private void track(TrackedTask entry) {
+        tracked.put(entry.wheelTask, entry);
+        trackedByChunk.computeIfAbsent(entry.worldId, id -> new HashMap<>())
+                .computeIfAbsent(entry.chunkKey, id -> new ArrayList<>(2))
+                .add(entry);
+    }
+
+    private void untrack(TrackedTask entry) {
+        if (tracked.remove(entry.wheelTask) == null) {
+            return;
+        }
+        if (entry.timeout != null) {
+            wheel.cancel(entry.timeout);
+            entry.timeout = null;
+        }
+        if (entry.held) {
+            entry.held = false;
+            heldCount--;
+        }
+        Map<Long, List<TrackedTask>> chunks = trackedByChunk.get(entry.worldId);
+        if (chunks == null) {
+            return;
+        }
+        List<TrackedTask> entries = chunks.get(entry.chunkKey);
+        if (entries != null && entries.remove(entry) && entries.isEmpty()) {
+            chunks.remove(entry.chunkKey);
+            if (chunks.isEmpty()) {
+                trackedByChunk.remove(entry.worldId);
+            }
+        }
+    }
+
+    private void drop(TrackedTask entry, Runnable callback) {
+        plugin.getMetrics().increment("scheduler.dropped");
+        if (callback == null) {
+            return;
+        }
+        try {
+            callback.run();
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "Error discarding scheduled task: " + e.getMessage(), e);
+        }
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+}
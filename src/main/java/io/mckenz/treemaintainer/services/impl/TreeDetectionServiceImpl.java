@@ -1,488 +1,296 @@
 package io.mckenz.treemaintainer.services.impl;
 
 import io.mckenz.treemaintainer.TreeMaintainer;
+import io.mckenz.treemaintainer.models.RemovalPlan;
+import io.mckenz.treemaintainer.models.TaskPolicy;
+import io.mckenz.treemaintainer.models.ShapeProfile;
+import io.mckenz.treemaintainer.models.TreeScan;
 import io.mckenz.treemaintainer.models.TreeType;
+import io.mckenz.treemaintainer.services.SchedulerService;
 import io.mckenz.treemaintainer.services.TreeDetectionService;
+import io.mckenz.treemaintainer.utils.BlockKeys;
+import io.mckenz.treemaintainer.utils.MaterialClassifier;
+import io.mckenz.treemaintainer.utils.RegionVersions;
+import io.mckenz.treemaintainer.world.ChunkSnapshotView;
+import io.mckenz.treemaintainer.world.LiveWorldView;
+import io.mckenz.treemaintainer.world.VoxelView;
 
 import org.bukkit.Material;
-import org.bukkit.block.Block;
-import org.bukkit.block.BlockFace;
+import org.bukkit.World;
 
-import java.util.*;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 /**
  * Implementation of the TreeDetectionService interface.
+ * Runs the {@link TreeScanner} on the main thread or on worker threads, and
+ * stamps each scan with the version of its region.
  */
 public class TreeDetectionServiceImpl implements TreeDetectionService {
 
+    // How long a scan waits for a chunk it reached to load before finishing without it
+    private static final long CHUNK_WAIT_TICKS = 200;
+
     private final TreeMaintainer plugin;
-    private static final BlockFace[] HORIZONTAL_FACES = {
-            BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST,
-            BlockFace.NORTH_EAST, BlockFace.SOUTH_EAST, BlockFace.SOUTH_WEST, BlockFace.NORTH_WEST
-    };
-    private static final BlockFace[] ALL_FACES = {
-            BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST,
-            BlockFace.UP, BlockFace.DOWN,
-            BlockFace.NORTH_EAST, BlockFace.SOUTH_EAST, BlockFace.SOUTH_WEST, BlockFace.NORTH_WEST
-    };
+    private final RegionVersions regionVersions;
+    private final SchedulerService schedulerService;
+    private volatile TreeScanner scanner;
+    private final ExecutorService scanExecutor;
 
-    public TreeDetectionServiceImpl(TreeMaintainer plugin) {
+    public TreeDetectionServiceImpl(TreeMaintainer plugin, RegionVersions regionVersions, SchedulerService schedulerService) {
         this.plugin = plugin;
+        this.regionVersions = regionVersions;
+        this.schedulerService = schedulerService;
+        this.scanner = new TreeScanner(plugin.getMaterialClassifier(), plugin.getShapeProfiles());
+        
+        AtomicInteger threadCount = new AtomicInteger();
+        this.scanExecutor = Executors.newFixedThreadPool(Math.max(1, plugin.getWorkerThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "TreeMaintainer-Scan-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     @Override
-    public boolean isTree(Block block) {
+    public boolean isTree(VoxelView view, long key) {
         try {
-            // Check if the block is a log
-            TreeType treeType = TreeType.fromLogMaterial(block.getType());
-            if (treeType == null) {
-                return false;
-            }
-
-            // Check if this tree type is enabled in the config
-            if (!plugin.isTreeTypeEnabled(treeType.getConfigName())) {
+            // Check if the block is a log of a tree type that is enabled in the config
+            TreeScanner scanner = scanner();
+            if (scanner.getClassifier().getEnabledLogType(view.getType(key)) == null) {
                 return false;
             }
 
             // Check if the log is connected to the ground
-            return isConnectedToGround(block);
+            return scanner.isConnectedToGround(view, key);
         } catch (Exception e) {
             plugin.getLogger().log(Level.WARNING, "Error checking if block is a tree: " + e.getMessage(), e);
             return false;
         }
     }
 
-    /**
-     * Check if a log block is connected to the ground
-     * @param block The log block to check
-     * @return True if connected to the ground, false otherwise
-     */
-    private boolean isConnectedToGround(Block block) {
+    @Override
+    public TreeScan scanTree(VoxelView view, UUID worldId, long origin, int maxDistance) {
         try {
-            // Check if the block below is dirt, grass, or other valid ground block
-            Block below = block.getRelative(BlockFace.DOWN);
-            Material belowType = below.getType();
-            
-            return belowType == Material.DIRT || 
-                   belowType == Material.GRASS_BLOCK || 
-                   belowType == Material.PODZOL || 
-                   belowType == Material.COARSE_DIRT || 
-                   belowType == Material.ROOTED_DIRT || 
-                   belowType == Material.MOSS_BLOCK || 
-                   belowType == Material.MUD;
+            TreeScan scan = scanner().scan(view, worldId, origin, maxDistance);
+            logScan(scan);
+            return scan.withRegionVersion(regionVersions.getVersion(worldId, scan.getMinX(), scan.getMinZ(), scan.getMaxX(), scan.getMaxZ()));
         } catch (Exception e) {
-            plugin.getLogger().log(Level.WARNING, "Error checking if block is connected to ground: " + e.getMessage(), e);
-            return false;
+            plugin.getLogger().log(Level.WARNING, "Error scanning tree: " + e.getMessage(), e);
+            return TreeScan.empty(worldId, origin);
         }
     }
 
     @Override
-    public Set<Block> findConnectedLogs(Block startBlock, int maxDistance) {
+    public CompletableFuture<TreeScan> scanTreeIncrementally(VoxelView view, UUID worldId, long origin, int maxDistance) {
+        CompletableFuture<TreeScan> future = new CompletableFuture<>();
         try {
-            TreeType treeType = TreeType.fromLogMaterial(startBlock.getType());
-            if (treeType == null) {
-                return Collections.emptySet();
-            }
-
-            // For large oak trees and 2x2 trees, we need a more thorough search
-            boolean isOak = treeType == TreeType.OAK;
-            boolean isJungle = treeType == TreeType.JUNGLE;
-            boolean is2x2Capable = treeType.canGrowAs2x2();
-            
-            // Use a larger effective distance for oak trees and 2x2 trees
-            // Jungle trees can be extremely tall, so use an even larger distance
-            int effectiveMaxDistance = maxDistance;
-            if (isOak) {
-                effectiveMaxDistance = Math.max(maxDistance * 2, 100);
-            } else if (isJungle) {
-                effectiveMaxDistance = Math.max(maxDistance * 3, 200); // Jungle trees can be very tall
-            } else if (is2x2Capable) {
-                effectiveMaxDistance = Math.max(maxDistance * 2, 100);
-            }
-            
-            Set<Block> connectedLogs = new HashSet<>();
-            Queue<Block> queue = new LinkedList<>();
-            Set<Block> visited = new HashSet<>();
-            
-            // For 2x2 trees, check if this is part of a 2x2 trunk and add all trunk blocks
-            if (is2x2Capable) {
-                Set<Block> trunkBlocks = find2x2TrunkBlocks(startBlock, treeType);
-                for (Block trunkBlock : trunkBlocks) {
-                    queue.add(trunkBlock);
-                    visited.add(trunkBlock);
-                }
-                plugin.debug("Found " + trunkBlocks.size() + " trunk blocks for potential 2x2 " + treeType.getConfigName() + " tree");
-            } else {
-                queue.add(startBlock);
-                visited.add(startBlock);
-            }
-            
-            // For jungle trees, also check a wider area above the starting block
-            if (isJungle) {
-                // Check up to 30 blocks above for jungle trees
-                for (int y = 1; y <= 30; y++) {
-                    Block above = startBlock.getRelative(0, y, 0);
-                    if (TreeType.fromLogMaterial(above.getType()) == treeType) {
-                        if (!visited.contains(above)) {
-                            visited.add(above);
-                            queue.add(above);
-                            plugin.debug("Added jungle log at height +" + y + " to search queue");
-                        }
-                    } else if (y > 5) {
-                        // If we haven't found a log for 5 blocks, stop searching upward
-                        boolean foundLog = false;
-                        for (int i = 1; i <= 5; i++) {
-                            if (TreeType.fromLogMaterial(startBlock.getRelative(0, y-i, 0).getType()) == treeType) {
-                                foundLog = true;
-                                break;
-                            }
-                        }
-                        if (!foundLog) break;
-                    }
-                }
-            }
-            
-            while (!queue.isEmpty() && connectedLogs.size() < effectiveMaxDistance) {
-                Block current = queue.poll();
-                
-                if (TreeType.fromLogMaterial(current.getType()) == treeType) {
-                    connectedLogs.add(current);
-                    
-                    // Check all adjacent blocks
-                    for (BlockFace face : ALL_FACES) {
-                        Block adjacent = current.getRelative(face);
-                        if (!visited.contains(adjacent)) {
-                            visited.add(adjacent);
-                            if (TreeType.fromLogMaterial(adjacent.getType()) == treeType) {
-                                queue.add(adjacent);
-                            }
-                        }
-                    }
-                    
-                    // For oak trees, also check diagonal up blocks (for branches)
-                    if (isOak) {
-                        for (BlockFace horizontalFace : HORIZONTAL_FACES) {
-                            Block diagonalUp = current.getRelative(horizontalFace).getRelative(BlockFace.UP);
-                            if (!visited.contains(diagonalUp)) {
-                                visited.add(diagonalUp);
-                                if (TreeType.fromLogMaterial(diagonalUp.getType()) == treeType) {
-                                    queue.add(diagonalUp);
-                                }
-                            }
-                        }
-                    }
-                    
-                    // For 2x2 capable trees, check diagonal blocks in all directions
-                    if (is2x2Capable) {
-                        for (BlockFace horizontalFace : HORIZONTAL_FACES) {
-                            // Check diagonal blocks at same level
-                            Block diagonal = current.getRelative(horizontalFace);
-                            if (!visited.contains(diagonal)) {
-                                visited.add(diagonal);
-                                if (TreeType.fromLogMaterial(diagonal.getType()) == treeType) {
-                                    queue.add(diagonal);
-                                }
-                            }
-                            
-                            // Check diagonal blocks above
-                            Block diagonalUp = current.getRelative(horizontalFace).getRelative(BlockFace.UP);
-                            if (!visited.contains(diagonalUp)) {
-                                visited.add(diagonalUp);
-                                if (TreeType.fromLogMaterial(diagonalUp.getType()) == treeType) {
-                                    queue.add(diagonalUp);
-                                }
-                            }
-                            
-                            // Check diagonal blocks below
-                            Block diagonalDown = current.getRelative(horizontalFace).getRelative(BlockFace.DOWN);
-                            if (!visited.contains(diagonalDown)) {
-                                visited.add(diagonalDown);
-                                if (TreeType.fromLogMaterial(diagonalDown.getType()) == treeType) {
-                                    queue.add(diagonalDown);
-                                }
-                            }
-                        }
-                        
-                        // For jungle trees, check even further in all directions
-                        if (isJungle) {
-                            // Check two blocks out in each direction
-                            for (BlockFace face : ALL_FACES) {
-                                Block twoAway = current.getRelative(face).getRelative(face);
-                                if (!visited.contains(twoAway)) {
-                                    visited.add(twoAway);
-                                    if (TreeType.fromLogMaterial(twoAway.getType()) == treeType) {
-                                        queue.add(twoAway);
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-            
-            // If we hit the max distance and this is a jungle tree, log a warning
-            if (connectedLogs.size() >= effectiveMaxDistance && isJungle) {
-                plugin.getLogger().warning("Hit maximum search distance for jungle tree. Some logs may not be detected. Consider increasing cleanup_max_distance in config.");
-            }
-            
-            plugin.debug("Found " + connectedLogs.size() + " connected logs for " + treeType.getConfigName() + " tree");
-            return connectedLogs;
+            ScanJob job = scanner().startScan(view, worldId, origin, maxDistance);
+            job.setWaitForChunks(true);
+            continueScan(job, future);
         } catch (Exception e) {
-            plugin.getLogger().log(Level.WARNING, "Error finding connected logs: " + e.getMessage(), e);
-            return Collections.emptySet();
+            plugin.getLogger().log(Level.WARNING, "Error scanning tree: " + e.getMessage(), e);
+            future.complete(TreeScan.empty(worldId, origin));
         }
+        return future;
     }
 
     /**
-     * Find all blocks that are part of a 2x2 tree trunk
-     * @param startBlock One of the trunk blocks
-     * @param treeType The tree type
-     * @return Set of blocks that form the 2x2 trunk
+     * Run one budgeted step of a scan job, scheduling the next step for the following tick if it has not finished
+     * @param job The scan job
+     * @param future The future to complete with the scan
      */
-    private Set<Block> find2x2TrunkBlocks(Block startBlock, TreeType treeType) {
-        Set<Block> trunkBlocks = new HashSet<>();
-        trunkBlocks.add(startBlock);
-        
-        // For dark oak and jungle, we need to be more thorough in our search
-        boolean isDarkOak = treeType == TreeType.DARK_OAK;
-        boolean isJungle = treeType == TreeType.JUNGLE;
-        boolean needsThoroughSearch = isDarkOak || isJungle;
-        
-        // Check all horizontal adjacent blocks
-        for (BlockFace face : HORIZONTAL_FACES) {
-            Block adjacent = startBlock.getRelative(face);
-            if (TreeType.fromLogMaterial(adjacent.getType()) == treeType) {
-                trunkBlocks.add(adjacent);
-                
-                // If we found a diagonal block, we need to check the other two blocks to form a 2x2 square
-                if (face == BlockFace.NORTH_EAST || face == BlockFace.SOUTH_EAST || 
-                    face == BlockFace.SOUTH_WEST || face == BlockFace.NORTH_WEST) {
-                    
-                    // Determine the two cardinal directions from the diagonal
-                    BlockFace[] cardinalFaces = getCardinalFacesFromDiagonal(face);
-                    
-                    // Check both cardinal blocks
-                    for (BlockFace cardinalFace : cardinalFaces) {
-                        Block cardinalBlock = startBlock.getRelative(cardinalFace);
-                        if (TreeType.fromLogMaterial(cardinalBlock.getType()) == treeType) {
-                            trunkBlocks.add(cardinalBlock);
-                            
-                            // Check the fourth block that would complete the 2x2 square
-                            Block fourthBlock = cardinalBlock.getRelative(face);
-                            if (TreeType.fromLogMaterial(fourthBlock.getType()) == treeType) {
-                                trunkBlocks.add(fourthBlock);
-                                
-                                // For dark oak and jungle, also check blocks above and below to ensure we get the full trunk
-                                if (needsThoroughSearch) {
-                                    // Check one block above and below each trunk block
-                                    for (Block trunkBlock : new HashSet<>(trunkBlocks)) {
-                                        Block above = trunkBlock.getRelative(BlockFace.UP);
-                                        Block below = trunkBlock.getRelative(BlockFace.DOWN);
-                                        
-                                        if (TreeType.fromLogMaterial(above.getType()) == treeType) {
-                                            trunkBlocks.add(above);
-                                        }
-                                        
-                                        if (TreeType.fromLogMaterial(below.getType()) == treeType) {
-                                            trunkBlocks.add(below);
-                                        }
-                                    }
-                                }
-                                
-                                return trunkBlocks; // We found a complete 2x2 trunk
-                            }
-                        }
-                    }
-                }
+    private void continueScan(ScanJob job, CompletableFuture<TreeScan> future) {
+        try {
+            // The scan is no longer wanted
+            if (future.isDone()) {
+                job.close();
+                return;
             }
-        }
-        
-        // If we didn't find a complete 2x2 trunk but this is dark oak or jungle,
-        // check cardinal directions more thoroughly
-        if (needsThoroughSearch && trunkBlocks.size() < 4) {
-            // Try to find a 2x2 trunk by checking cardinal directions
-            if (hasCardinal2x2Trunk(startBlock, treeType, trunkBlocks)) {
-                return trunkBlocks;
+            
+            if (!job.step(plugin.getScanBlockBudget(), plugin.getScanTimeBudgetMicros() * 1000L)) {
+                if (job.isWaitingForChunk()) {
+                    waitForChunk(job, future);
+                    return;
+                }
+                plugin.getMetrics().increment("scan.resumed");
+                // A scan left waiting while its chunk is unloaded would read stale blocks, so it is dropped
+                schedulerService.runLater(() -> continueScan(job, future), 1L, job.getWorldId(), job.getOrigin(), TaskPolicy.DROP, () -> {
+                    job.close();
+                    future.completeExceptionally(new IllegalStateException("Tree scan abandoned: its chunk was unloaded"));
+                });
+                return;
             }
-        }
-        
-        return trunkBlocks;
-    }
-    
-    /**
-     * Check if there's a 2x2 trunk by examining cardinal directions
-     * @param startBlock The starting block
-     * @param treeType The tree type
-     * @param trunkBlocks Set to add trunk blocks to
-     * @return True if a 2x2 trunk was found, false otherwise
-     */
-    private boolean hasCardinal2x2Trunk(Block startBlock, TreeType treeType, Set<Block> trunkBlocks) {
-        // Check if we can form a 2x2 trunk with this block as any of the 4 corners
-        // Format: {x1, y1, z1, x2, y2, z2, x3, y3, z3} for the three other blocks
-        int[][] offsets = {
-            {1, 0, 0, 0, 0, 1, 1, 0, 1},  // This block as NW corner
-            {-1, 0, 0, 0, 0, 1, -1, 0, 1}, // This block as NE corner
-            {1, 0, 0, 0, 0, -1, 1, 0, -1}, // This block as SW corner
-            {-1, 0, 0, 0, 0, -1, -1, 0, -1} // This block as SE corner
-        };
-        
-        for (int[] offset : offsets) {
-            Block b1 = startBlock.getRelative(offset[0], offset[1], offset[2]);
-            Block b2 = startBlock.getRelative(offset[3], offset[4], offset[5]);
-            Block b3 = startBlock.getRelative(offset[6], offset[7], offset[8]);
             
-            if (TreeType.fromLogMaterial(b1.getType()) == treeType &&
-                TreeType.fromLogMaterial(b2.getType()) == treeType &&
-                TreeType.fromLogMaterial(b3.getType()) == treeType) {
-                
-                trunkBlocks.add(b1);
-                trunkBlocks.add(b2);
-                trunkBlocks.add(b3);
-                return true;
+            TreeScan scan = job.getResult();
+            if (job.getSteps() > 1) {
+                plugin.getMetrics().increment("scan.multi-tick");
+                plugin.debug("Tree scan finished after " + job.getSteps() + " ticks");
             }
+            logScan(scan);
+            future.complete(scan.withRegionVersion(regionVersions.getVersion(scan.getWorldId(), scan.getMinX(), scan.getMinZ(), scan.getMaxX(), scan.getMaxZ())));
+        } catch (Exception e) {
+            job.close();
+            plugin.getLogger().log(Level.WARNING, "Error scanning tree: " + e.getMessage(), e);
+            future.completeExceptionally(e);
         }
-        
-        return false;
     }
-    
+
     /**
-     * Get the two cardinal BlockFaces that make up a diagonal BlockFace
-     * @param diagonalFace The diagonal BlockFace
-     * @return Array of the two cardinal BlockFaces
+     * Pause a scan job that reached a chunk that is not loaded, and resume it when the chunk loads.
+     * If the chunk does not load in time the scan finishes without it and is marked as truncated.
+     * If the world unloads first the scan is abandoned and its future completes exceptionally.
+     * @param job The scan job
+     * @param future The future to complete with the scan
      */
-    private BlockFace[] getCardinalFacesFromDiagonal(BlockFace diagonalFace) {
-        switch (diagonalFace) {
-            case NORTH_EAST:
-                return new BlockFace[]{BlockFace.NORTH, BlockFace.EAST};
-            case SOUTH_EAST:
-                return new BlockFace[]{BlockFace.SOUTH, BlockFace.EAST};
-            case SOUTH_WEST:
-                return new BlockFace[]{BlockFace.SOUTH, BlockFace.WEST};
-            case NORTH_WEST:
-                return new BlockFace[]{BlockFace.NORTH, BlockFace.WEST};
-            default:
-                return new BlockFace[]{BlockFace.NORTH, BlockFace.EAST}; // Default fallback
-        }
+    private void waitForChunk(ScanJob job, CompletableFuture<TreeScan> future) {
+        plugin.getMetrics().increment("chunk.scans-suspended");
+        plugin.debug("Tree scan reached a chunk that is not loaded - waiting for it to load");
+        schedulerService.runWhenLoaded(() -> {
+            plugin.getMetrics().increment("chunk.scans-resumed");
+            continueScan(job, future);
+        }, job.getWorldId(), job.getWaitingKey(), CHUNK_WAIT_TICKS, () -> {
+            plugin.getMetrics().increment("chunk.scans-timed-out");
+            job.setWaitForChunks(false);
+            continueScan(job, future);
+        }, () -> {
+            job.close();
+            future.completeExceptionally(new IllegalStateException("Tree scan abandoned: its world was unloaded"));
+        });
+    }
+
+    @Override
+    public boolean isCurrent(TreeScan scan, int knownChanges) {
+        long version = regionVersions.getVersion(scan.getWorldId(), scan.getMinX(), scan.getMinZ(), scan.getMaxX(), scan.getMaxZ());
+        return version - scan.getRegionVersion() <= knownChanges;
     }
 
     @Override
-    public Set<Block> findFloatingLogs(Block startBlock, int maxDistance) {
+    public TreeScan refreshScan(TreeScan scan, int maxDistance) {
         try {
-            TreeType treeType = TreeType.fromLogMaterial(startBlock.getType());
-            if (treeType == null) {
-                return Collections.emptySet();
+            World world = plugin.getServer().getWorld(scan.getWorldId());
+            if (scan.getTreeType() == null || world == null) {
+                return scan;
             }
-
-            // Find all connected logs
-            Set<Block> allLogs = findConnectedLogs(startBlock, maxDistance);
-            Set<Block> floatingLogs = new HashSet<>();
             
-            // Check each log to see if it's floating (not connected to the ground)
-            for (Block log : allLogs) {
-                if (!isConnectedToGround(log) && !isConnectedToGroundedLog(log, allLogs)) {
-                    floatingLogs.add(log);
-                }
+            long version = regionVersions.getVersion(scan.getWorldId(), scan.getMinX(), scan.getMinZ(), scan.getMaxX(), scan.getMaxZ());
+            if (!scan.isTruncated() && version == scan.getRegionVersion()) {
+                plugin.getMetrics().increment("scan.reused");
+                return scan;
             }
+            plugin.getMetrics().increment("scan.refreshed");
             
-            return floatingLogs;
+            TreeScan refreshed = scanner().rescan(new LiveWorldView(world), scan, maxDistance);
+            logScan(refreshed);
+            return refreshed.withRegionVersion(regionVersions.getVersion(scan.getWorldId(), refreshed.getMinX(), refreshed.getMinZ(), refreshed.getMaxX(), refreshed.getMaxZ()));
         } catch (Exception e) {
-            plugin.getLogger().log(Level.WARNING, "Error finding floating logs: " + e.getMessage(), e);
-            return Collections.emptySet();
+            plugin.getLogger().log(Level.WARNING, "Error refreshing tree scan: " + e.getMessage(), e);
+            return scan;
         }
     }
 
-    /**
-     * Check if a log is connected to a grounded log
-     * @param log The log to check
-     * @param allLogs All logs in the tree
-     * @return True if connected to a grounded log, false otherwise
-     */
-    private boolean isConnectedToGroundedLog(Block log, Set<Block> allLogs) {
+    @Override
+    public TreeScan mergeScans(TreeScan first, TreeScan second) {
+        TreeScan merged = first.merge(second);
+        if (isCurrent(first, 0) && isCurrent(second, 0)) {
+            // Nothing has changed in either region, so the combined scan is as current as its parts
+            return merged.withRegionVersion(regionVersions.getVersion(merged.getWorldId(), merged.getMinX(), merged.getMinZ(), merged.getMaxX(), merged.getMaxZ()));
+        }
+        return merged;
+    }
+
+    @Override
+    public CompletableFuture<TreeScan> scanRemainingLogs(TreeScan scan, int maxDistance) {
+        CompletableFuture<TreeScan> future = new CompletableFuture<>();
         try {
-            Set<Block> visited = new HashSet<>();
-            Queue<Block> queue = new LinkedList<>();
-            
-            queue.add(log);
-            visited.add(log);
-            
-            while (!queue.isEmpty()) {
-                Block current = queue.poll();
-                
-                // Check if this log is connected to the ground
-                if (isConnectedToGround(current)) {
-                    return true;
-                }
-                
-                // Check adjacent blocks
-                for (BlockFace face : ALL_FACES) {
-                    Block adjacent = current.getRelative(face);
-                    if (allLogs.contains(adjacent) && !visited.contains(adjacent)) {
-                        visited.add(adjacent);
-                        queue.add(adjacent);
-                    }
-                }
+            World world = plugin.getServer().getWorld(scan.getWorldId());
+            if (scan.getTreeType() == null || world == null) {
+                future.complete(TreeScan.empty(scan.getWorldId(), scan.getOrigin()));
+                return future;
             }
             
-            return false;
+            plugin.getMetrics().increment("scan.remaining");
+            ScanJob job = scanner().startRemainingScan(new LiveWorldView(world), scan, maxDistance);
+            job.setWaitForChunks(true);
+            continueScan(job, future);
         } catch (Exception e) {
-            plugin.getLogger().log(Level.WARNING, "Error checking if log is connected to grounded log: " + e.getMessage(), e);
-            return false;
+            plugin.getLogger().log(Level.WARNING, "Error scanning remaining logs: " + e.getMessage(), e);
+            future.complete(TreeScan.empty(scan.getWorldId(), scan.getOrigin()));
         }
+        return future;
     }
 
     @Override
-    public Set<Block> findFloatingLeaves(Block startBlock, int maxDistance) {
+    public RemovalPlan planRemoval(VoxelView view, TreeScan scan) {
         try {
-            TreeType treeType = TreeType.fromLogMaterial(startBlock.getType());
-            if (treeType == null) {
-                return Collections.emptySet();
-            }
+            return scanner().planRemoval(view, scan);
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "Error planning tree removal: " + e.getMessage(), e);
+            return new RemovalPlan(scan, new long[0], new Material[0]);
+        }
+    }
 
-            // Find all connected logs
-            Set<Block> allLogs = findConnectedLogs(startBlock, maxDistance);
-            Set<Block> floatingLeaves = new HashSet<>();
-            Set<Block> visited = new HashSet<>();
-            
-            // Check around each log for leaves
-            for (Block log : allLogs) {
-                for (BlockFace face : ALL_FACES) {
-                    Block adjacent = log.getRelative(face);
-                    if (adjacent.getType() == treeType.getLeavesMaterial() && !visited.contains(adjacent)) {
-                        // If the leaf is not connected to a non-floating log, it's floating
-                        if (!isConnectedToNonFloatingLog(adjacent, allLogs)) {
-                            floatingLeaves.add(adjacent);
-                        }
-                        visited.add(adjacent);
-                    }
-                }
-            }
-            
-            return floatingLeaves;
+    @Override
+    public RemovalPlan planLeafRemoval(VoxelView view, TreeScan scan) {
+        try {
+            return scanner().planLeafRemoval(view, scan);
         } catch (Exception e) {
-            plugin.getLogger().log(Level.WARNING, "Error finding floating leaves: " + e.getMessage(), e);
-            return Collections.emptySet();
+            plugin.getLogger().log(Level.WARNING, "Error planning leaf removal: " + e.getMessage(), e);
+            return new RemovalPlan(scan, new long[0], new Material[0]);
         }
     }
 
+    @Override
+    public CompletableFuture<RemovalPlan> planFellingAsync(World world, long origin, int maxDistance) {
+        UUID worldId = world.getUID();
+        TreeScanner scanner = scanner();
+        
+        // Snapshots must be taken on the main thread; everything after that runs on the scan workers
+        ChunkSnapshotView view = ChunkSnapshotView.capture(world, BlockKeys.x(origin), BlockKeys.z(origin), plugin.getSnapshotRadius(), regionVersions);
+        plugin.getMetrics().increment("scan.async");
+        
+        return CompletableFuture.supplyAsync(() -> {
+            TreeScan scan = scanner.scan(view, worldId, origin, maxDistance);
+            logScan(scan);
+            scan = scan.withRegionVersion(view.getVersion(scan.getMinX(), scan.getMinZ(), scan.getMaxX(), scan.getMaxZ()));
+            return scanner.planRemoval(view, scan);
+        }, scanExecutor);
+    }
+
+    @Override
+    public void shutdown() {
+        scanExecutor.shutdownNow();
+    }
+
     /**
-     * Check if a leaf block is connected to a non-floating log
-     * @param leaf The leaf block to check
-     * @param allLogs All logs in the tree
-     * @return True if connected to a non-floating log, false otherwise
+     * Get a scanner for the current material classifier and shape profiles, which are replaced whenever the config is reloaded
+     * @return The scanner
      */
-    private boolean isConnectedToNonFloatingLog(Block leaf, Set<Block> allLogs) {
-        try {
-            for (BlockFace face : ALL_FACES) {
-                Block adjacent = leaf.getRelative(face);
-                if (allLogs.contains(adjacent) && isConnectedToGround(adjacent)) {
-                    return true;
-                }
-            }
-            return false;
-        } catch (Exception e) {
-            plugin.getLogger().log(Level.WARNING, "Error checking if leaf is connected to non-floating log: " + e.getMessage(), e);
-            return false;
+    private TreeScanner scanner() {
+        TreeScanner current = scanner;
+        MaterialClassifier classifier = plugin.getMaterialClassifier();
+        Map<TreeType, ShapeProfile> profiles = plugin.getShapeProfiles();
+        if (!current.isBuiltFrom(classifier, profiles)) {
+            current = new TreeScanner(classifier, profiles);
+            scanner = current;
+        }
+        return current;
+    }
+
+    private void logScan(TreeScan scan) {
+        TreeType treeType = scan.getTreeType();
+        if (treeType == null) {
+            return;
+        }
+        
+        // If we hit the max distance and this is a jungle tree, log a warning
+        if (scan.isTruncated() && treeType == TreeType.JUNGLE) {
+            plugin.getLogger().warning("Hit maximum search distance for jungle tree. Some logs may not be detected. Consider increasing cleanup_max_distance in config.");
         }
+        plugin.debug("Found " + scan.getLogCount() + " connected logs for " + treeType.getConfigName() + " tree");
     }
-} 
\ No newline at end of file
+}
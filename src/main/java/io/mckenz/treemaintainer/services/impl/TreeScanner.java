@@ -0,0 +1,637 @@
+package io.mckenz.treemaintainer.services.impl;
+
+import io.mckenz.treemaintainer.models.RemovalPlan;
+import io.mckenz.treemaintainer.models.ShapeProfile;
+import io.mckenz.treemaintainer.models.TreeScan;
+import io.mckenz.treemaintainer.models.TreeType;
+import io.mckenz.treemaintainer.utils.BlockKeys;
+import io.mckenz.treemaintainer.utils.LongOpenHashSet;
+import io.mckenz.treemaintainer.utils.LongRingDeque;
+import io.mckenz.treemaintainer.utils.MaterialClassifier;
+import io.mckenz.treemaintainer.utils.ScanWorkspace;
+import io.mckenz.treemaintainer.world.VoxelView;
+
+import org.bukkit.Material;
+import org.bukkit.block.BlockFace;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Tree detection algorithms, run against a {@link VoxelView}.
+ * Has no dependency on the plugin or a running server, so the same code is used
+ * on the main thread, on worker threads and in headless benchmarks.
+ */
+public class TreeScanner {
+
+    private static final BlockFace[] HORIZONTAL_FACES = {
+            BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST,
+            BlockFace.NORTH_EAST, BlockFace.SOUTH_EAST, BlockFace.SOUTH_WEST, BlockFace.NORTH_WEST
+    };
+    private static final BlockFace[] ALL_FACES = {
+            BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST,
+            BlockFace.UP, BlockFace.DOWN,
+            BlockFace.NORTH_EAST, BlockFace.SOUTH_EAST, BlockFace.SOUTH_WEST, BlockFace.NORTH_WEST
+    };
+    private static final BlockFace[] FACES = {
+            BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST, BlockFace.UP, BlockFace.DOWN
+    };
+    static final long[] ALL_FACE_DELTAS = toDeltas(ALL_FACES);
+    private static final long[] FACE_DELTAS = toDeltas(FACES);
+    private static final long UP = BlockKeys.delta(0, 1, 0);
+    private static final long DOWN = BlockKeys.delta(0, -1, 0);
+    // Leaves further than this from a log, counted in steps through leaves, decay in vanilla
+    private static final int MAX_LEAF_DISTANCE = 6;
+    private static final int MAX_CANOPY_LEAVES = 16384;
+
+    private final MaterialClassifier classifier;
+    private final Map<TreeType, ShapeProfile> profileMap;
+    private final ShapeProfile[] profiles;
+
+    /**
+     * Create a new tree scanner
+     * @param classifier The material lookup table to classify blocks with
+     * @param profiles The search shape of each tree type
+     */
+    public TreeScanner(MaterialClassifier classifier, Map<TreeType, ShapeProfile> profiles) {
+        this.classifier = classifier;
+        this.profileMap = profiles;
+        this.profiles = new ShapeProfile[TreeType.values().length];
+        for (TreeType treeType : TreeType.values()) {
+            ShapeProfile profile = profiles.get(treeType);
+            this.profiles[treeType.ordinal()] = profile != null ? profile : ShapeProfile.defaultFor(treeType);
+        }
+    }
+
+    public MaterialClassifier getClassifier() {
+        return classifier;
+    }
+
+    /**
+     * Check whether this scanner was created from the given settings
+     * @param classifier The material lookup table
+     * @param profiles The search shape of each tree type
+     * @return True if the scanner uses exactly these settings
+     */
+    public boolean isBuiltFrom(MaterialClassifier classifier, Map<TreeType, ShapeProfile> profiles) {
+        return this.classifier == classifier && this.profileMap == profiles;
+    }
+
+    /**
+     * Check if a log block is connected to the ground
+     * @param view The blocks to read
+     * @param key The packed key of the log
+     * @return True if connected to the ground, false otherwise
+     */
+    public boolean isConnectedToGround(VoxelView view, long key) {
+        return isOnGround(view, key);
+    }
+
+    private boolean isOnGround(VoxelView view, long key) {
+        // Check if the block below is dirt, grass, or other valid ground block
+        return classifier.isSoil(view.getType(key + DOWN));
+    }
+
+    /**
+     * Scan the tree that a log belongs to
+     * @param view The blocks to read
+     * @param worldId The world being scanned
+     * @param origin The packed key of the starting log
+     * @param maxDistance The maximum distance to search
+     * @return The scan, which is empty if the starting block is not a log
+     */
+    public TreeScan scan(VoxelView view, UUID worldId, long origin, int maxDistance) {
+        TreeType treeType = classifier.getLogType(view.getType(origin));
+        if (treeType == null) {
+            return TreeScan.empty(worldId, origin);
+        }
+        
+        try (ScanJob job = new ScanJob(this, view, worldId, treeType, origin, findSeeds(view, origin, treeType),
+                profiles[treeType.ordinal()].getMaxLogs(maxDistance), null, ScanWorkspace.acquire())) {
+            job.step(Integer.MAX_VALUE, Long.MAX_VALUE);
+            return job.getResult();
+        }
+    }
+
+    /**
+     * Start a scan of the tree that a log belongs to, to be run in steps with {@link ScanJob#step(int, long)}.
+     * The job keeps its search frontier between steps, so it can be continued on a later tick.
+     * @param view The blocks to read
+     * @param worldId The world being scanned
+     * @param origin The packed key of the starting log
+     * @param maxDistance The maximum distance to search
+     * @return The scan job, already finished with an empty scan if the starting block is not a log
+     */
+    public ScanJob startScan(VoxelView view, UUID worldId, long origin, int maxDistance) {
+        TreeType treeType = classifier.getLogType(view.getType(origin));
+        if (treeType == null) {
+            return ScanJob.finished(TreeScan.empty(worldId, origin));
+        }
+        
+        return new ScanJob(this, view, worldId, treeType, origin, findSeeds(view, origin, treeType),
+                profiles[treeType.ordinal()].getMaxLogs(maxDistance), null, ScanWorkspace.acquireDetached());
+    }
+
+    /**
+     * Find the logs a scan starts from: the starting log, the rest of a 2x2 trunk and,
+     * for very tall trees, logs in the column above the starting log
+     * @param view The blocks to read
+     * @param origin The packed key of the starting log
+     * @param treeType The tree type being scanned
+     * @return The packed keys of the seed logs
+     */
+    private LongRingDeque findSeeds(VoxelView view, long origin, TreeType treeType) {
+        LongRingDeque seeds;
+        
+        // For 2x2 trees, check if this is part of a 2x2 trunk and add all trunk blocks
+        if (treeType.canGrowAs2x2()) {
+            seeds = find2x2TrunkBlocks(view, origin, treeType);
+        } else {
+            seeds = new LongRingDeque(16);
+            seeds.addLast(origin);
+        }
+        
+        // For very tall trees (jungle by default), also check a column above the starting block
+        int columnHeight = profiles[treeType.ordinal()].getColumnHeight();
+        if (columnHeight > 0) {
+            int x = BlockKeys.x(origin);
+            int y = BlockKeys.y(origin);
+            int z = BlockKeys.z(origin);
+            for (int dy = 1; dy <= columnHeight; dy++) {
+                if (classifier.getLogType(view.getType(BlockKeys.pack(x, y + dy, z))) == treeType) {
+                    seeds.addLast(BlockKeys.pack(x, y + dy, z));
+                } else if (dy > 5) {
+                    // If we haven't found a log for 5 blocks, stop searching upward
+                    boolean foundLog = false;
+                    for (int i = 1; i <= 5; i++) {
+                        if (classifier.getLogType(view.getType(BlockKeys.pack(x, y + dy - i, z))) == treeType) {
+                            foundLog = true;
+                            break;
+                        }
+                    }
+                    if (!foundLog) break;
+                }
+            }
+        }
+        
+        return seeds;
+    }
+
+    /**
+     * Scan a tree again, starting from the logs of an earlier scan that are still standing.
+     * An incomplete scan also resumes from the logs just outside what it found.
+     * Leaves of the earlier scan that are still present are kept.
+     * @param view The blocks to read
+     * @param scan The earlier scan
+     * @param maxDistance The maximum distance to search
+     * @return The new scan
+     */
+    public TreeScan rescan(VoxelView view, TreeScan scan, int maxDistance) {
+        TreeType treeType = scan.getTreeType();
+        if (treeType == null) {
+            return scan;
+        }
+        
+        // Continue from the logs that are still standing
+        LongRingDeque seeds = new LongRingDeque(scan.getLogCount());
+        for (int i = 0; i < scan.getLogCount(); i++) {
+            long log = scan.getLog(i);
+            if (isLog(view, log, treeType)) {
+                seeds.addLast(log);
+            }
+        }
+        
+        // An incomplete scan also resumes from the logs just outside what it found
+        if (scan.isTruncated()) {
+            for (int i = 0; i < scan.getLogCount(); i++) {
+                long log = scan.getLog(i);
+                for (long delta : ALL_FACE_DELTAS) {
+                    long adjacent = log + delta;
+                    if (!scan.containsLog(adjacent) && isLog(view, adjacent, treeType)) {
+                        seeds.addLast(adjacent);
+                    }
+                }
+            }
+        }
+        
+        try (ScanJob job = new ScanJob(this, view, scan.getWorldId(), treeType, scan.getOrigin(), seeds,
+                profiles[treeType.ordinal()].getMaxLogs(maxDistance), scan, ScanWorkspace.acquire())) {
+            job.step(Integer.MAX_VALUE, Long.MAX_VALUE);
+            return job.getResult();
+        }
+    }
+
+    /**
+     * Start a scan of the logs still standing next to a felled tree, to be run in steps with
+     * {@link ScanJob#step(int, long)}. The search starts from the tree's logs that are still
+     * standing and from every log within the tree type's search shape of the felled logs.
+     * The felled logs are gone, so only logs that have not been removed are found.
+     * Leaves of the earlier scan that are still present are kept.
+     * @param view The blocks to read
+     * @param scan The scan of the felled tree
+     * @param maxDistance The maximum distance to search
+     * @return The scan job, already finished with an empty scan if no logs remain
+     */
+    public ScanJob startRemainingScan(VoxelView view, TreeScan scan, int maxDistance) {
+        TreeType treeType = scan.getTreeType();
+        if (treeType == null) {
+            return ScanJob.finished(TreeScan.empty(scan.getWorldId(), scan.getOrigin()));
+        }
+        
+        long[] deltas = getSearchDeltas(treeType);
+        LongRingDeque seeds = new LongRingDeque(16);
+        for (int i = 0; i < scan.getLogCount(); i++) {
+            long log = scan.getLog(i);
+            if (isLog(view, log, treeType)) {
+                seeds.addLast(log);
+            }
+            for (long delta : deltas) {
+                long adjacent = log + delta;
+                if (!scan.containsLog(adjacent) && isLog(view, adjacent, treeType)) {
+                    seeds.addLast(adjacent);
+                }
+            }
+        }
+        if (seeds.isEmpty()) {
+            return ScanJob.finished(TreeScan.empty(scan.getWorldId(), scan.getOrigin()));
+        }
+        
+        return new ScanJob(this, view, scan.getWorldId(), treeType, scan.getOrigin(), seeds,
+                profiles[treeType.ordinal()].getMaxLogs(maxDistance), scan, ScanWorkspace.acquireDetached());
+    }
+
+    /**
+     * Make a plan to remove every log of a scan except the block the scan started from
+     * @param view The blocks to read
+     * @param scan The scan of the tree
+     * @return The removal plan
+     */
+    public RemovalPlan planRemoval(VoxelView view, TreeScan scan) {
+        long[] keys = new long[scan.getLogCount()];
+        Material[] expectedTypes = new Material[keys.length];
+        int count = 0;
+        for (int i = 0; i < scan.getLogCount(); i++) {
+            long key = scan.getLog(i);
+            if (key == scan.getOrigin()) {
+                continue;
+            }
+            Material type = view.getType(key);
+            if (classifier.getLogType(type) == scan.getTreeType()) {
+                keys[count] = key;
+                expectedTypes[count] = type;
+                count++;
+            }
+        }
+        return new RemovalPlan(scan, Arrays.copyOf(keys, count), Arrays.copyOf(expectedTypes, count));
+    }
+
+    /**
+     * Make a plan to remove the leaves of a scanned tree that are no longer held up by any log.
+     * Follows vanilla leaf decay: a leaf is held up if a path of at most six leaves, through faces,
+     * leads from it to a log of any kind. Logs and leaves count as vanilla counts them, by the logs and
+     * leaves tags, so leaves held up by a neighbouring tree of another species stay. Other leaves on the
+     * way count too, including player-placed ones, but only the tree's own natural leaves are removed. The whole canopy is resolved in one pass.
+     * @param view The blocks to read
+     * @param scan The scan of the tree
+     * @return The removal plan, which is empty if the canopy is too large to resolve
+     */
+    public RemovalPlan planLeafRemoval(VoxelView view, TreeScan scan) {
+        TreeType treeType = scan.getTreeType();
+        if (treeType == null || scan.getLeafCount() == 0) {
+            return new RemovalPlan(scan, new long[0], new Material[0]);
+        }
+        Material leavesMaterial = treeType.getLeavesMaterial();
+        
+        try (ScanWorkspace workspace = ScanWorkspace.acquire()) {
+            LongOpenHashSet checked = workspace.visited();
+            LongOpenHashSet region = workspace.members();
+            LongRingDeque regionList = workspace.list();
+            
+            // Gather every leaf within five steps of the canopy. Any path of at most six leaves
+            // from a canopy leaf to a log lies inside this region, so nothing outside it matters
+            for (int i = 0; i < scan.getLeafCount(); i++) {
+                long leaf = scan.getLeaf(i);
+                checked.add(leaf);
+                if (view.getType(leaf) == leavesMaterial && region.add(leaf)) {
+                    regionList.addLast(leaf);
+                }
+            }
+            int layerStart = 0;
+            for (int step = 1; step < MAX_LEAF_DISTANCE; step++) {
+                int layerEnd = regionList.size();
+                for (int i = layerStart; i < layerEnd; i++) {
+                    long current = regionList.get(i);
+                    for (long delta : FACE_DELTAS) {
+                        long adjacent = current + delta;
+                        if (checked.add(adjacent) && classifier.isDecayLeaves(view.getType(adjacent)) && region.add(adjacent)) {
+                            regionList.addLast(adjacent);
+                        }
+                    }
+                }
+                if (regionList.size() > MAX_CANOPY_LEAVES) {
+                    // Too large to resolve safely; leave it to vanilla decay
+                    return new RemovalPlan(scan, new long[0], new Material[0]);
+                }
+                layerStart = layerEnd;
+            }
+            
+            // Spread leaf distance outwards from every log touching the region, one level at a time
+            LongOpenHashSet supported = checked;
+            LongRingDeque queue = workspace.queue();
+            supported.clear();
+            for (int i = 0; i < regionList.size(); i++) {
+                long leaf = regionList.get(i);
+                for (long delta : FACE_DELTAS) {
+                    if (classifier.isDecayLog(view.getType(leaf + delta))) {
+                        supported.add(leaf);
+                        queue.addLast(leaf);
+                        break;
+                    }
+                }
+            }
+            for (int distance = 2; distance <= MAX_LEAF_DISTANCE && !queue.isEmpty(); distance++) {
+                for (int remaining = queue.size(); remaining > 0; remaining--) {
+                    long current = queue.pollFirst();
+                    for (long delta : FACE_DELTAS) {
+                        long adjacent = current + delta;
+                        if (region.contains(adjacent) && supported.add(adjacent)) {
+                            queue.addLast(adjacent);
+                        }
+                    }
+                }
+            }
+            
+            // Every natural canopy leaf that no log holds up would decay
+            long[] keys = new long[scan.getLeafCount()];
+            int count = 0;
+            for (int i = 0; i < scan.getLeafCount(); i++) {
+                long leaf = scan.getLeaf(i);
+                if (region.contains(leaf) && !supported.contains(leaf) && !view.isPersistentLeaves(leaf)) {
+                    keys[count++] = leaf;
+                }
+            }
+            Material[] expectedTypes = new Material[count];
+            Arrays.fill(expectedTypes, leavesMaterial);
+            return new RemovalPlan(scan, Arrays.copyOf(keys, count), expectedTypes);
+        }
+    }
+
+    /**
+     * Classify the logs found by a scan and collect the tree's leaves
+     * @param view The blocks to read
+     * @param worldId The world being scanned
+     * @param treeType The tree type being scanned
+     * @param origin The packed key of the block the scan started from
+     * @param logs The packed keys of the connected logs
+     * @param truncated Whether the search stopped before finishing
+     * @param previous The scan being refreshed, whose leaves are kept if still present, or null
+     * @param workspace The scratch space to use, which is cleared first
+     * @return The scan
+     */
+    TreeScan classify(VoxelView view, UUID worldId, TreeType treeType, long origin, LongRingDeque logs, boolean truncated, TreeScan previous, ScanWorkspace workspace) {
+        LongRingDeque grounded = new LongRingDeque(logs.size());
+        LongRingDeque leaves = new LongRingDeque(logs.size());
+        
+        LongOpenHashSet logKeys = workspace.members();
+        LongOpenHashSet reached = workspace.visited();
+        LongRingDeque queue = workspace.queue();
+        logKeys.clear();
+        reached.clear();
+        queue.clear();
+        
+        // Seed the search from every log that sits directly on the ground
+        for (int i = 0; i < logs.size(); i++) {
+            long key = logs.get(i);
+            logKeys.add(key);
+            if (isOnGround(view, key)) {
+                reached.add(key);
+                queue.addLast(key);
+            }
+        }
+        
+        // Spread outwards through the tree; every log reached is held up by a grounded log
+        while (!queue.isEmpty()) {
+            long current = queue.pollFirst();
+            grounded.addLast(current);
+            for (long delta : ALL_FACE_DELTAS) {
+                long adjacent = current + delta;
+                if (logKeys.contains(adjacent) && reached.add(adjacent)) {
+                    queue.addLast(adjacent);
+                }
+            }
+        }
+        
+        // Collect the whole canopy: every natural leaf of this tree type within leaf distance of one of its logs,
+        // stepping through faces one distance level at a time, plus the leaves of the previous scan that remain
+        reached.clear();
+        Material leavesMaterial = treeType.getLeavesMaterial();
+        for (int i = 0; i < logs.size(); i++) {
+            reached.add(logs.get(i));
+            queue.addLast(logs.get(i));
+        }
+        for (int distance = 1; distance <= MAX_LEAF_DISTANCE && !queue.isEmpty() && leaves.size() < MAX_CANOPY_LEAVES; distance++) {
+            for (int remaining = queue.size(); remaining > 0; remaining--) {
+                long current = queue.pollFirst();
+                for (long delta : FACE_DELTAS) {
+                    long adjacent = current + delta;
+                    if (reached.add(adjacent) && view.getType(adjacent) == leavesMaterial && !view.isPersistentLeaves(adjacent)) {
+                        leaves.addLast(adjacent);
+                        queue.addLast(adjacent);
+                    }
+                }
+            }
+        }
+        queue.clear();
+        if (previous != null) {
+            for (int i = 0; i < previous.getLeafCount(); i++) {
+                long leaf = previous.getLeaf(i);
+                if (reached.add(leaf) && view.getType(leaf) == leavesMaterial && !view.isPersistentLeaves(leaf)) {
+                    leaves.addLast(leaf);
+                }
+            }
+        }
+        
+        return new TreeScan(worldId, treeType, origin, toArray(logs), toArray(grounded), toArray(leaves), truncated);
+    }
+
+    /**
+     * Get the compiled neighbour offsets searched around each log of a tree type
+     * @param treeType The tree type
+     * @return The packed deltas
+     */
+    long[] getSearchDeltas(TreeType treeType) {
+        return profiles[treeType.ordinal()].getDeltas();
+    }
+
+    /**
+     * Convert block faces into packed key deltas
+     * @param faces The faces to convert
+     * @return The packed deltas
+     */
+    private static long[] toDeltas(BlockFace[] faces) {
+        long[] deltas = new long[faces.length];
+        for (int i = 0; i < faces.length; i++) {
+            deltas[i] = faceDelta(faces[i]);
+        }
+        return deltas;
+    }
+
+    /**
+     * Find all blocks that are part of a 2x2 tree trunk
+     * @param view The blocks to read
+     * @param start The packed key of one of the trunk blocks
+     * @param treeType The tree type
+     * @return The packed keys of the blocks that form the 2x2 trunk
+     */
+    private LongRingDeque find2x2TrunkBlocks(VoxelView view, long start, TreeType treeType) {
+        LongRingDeque trunkBlocks = new LongRingDeque(16);
+        trunkBlocks.addLast(start);
+        
+        // For dark oak and jungle, we need to be more thorough in our search
+        boolean isDarkOak = treeType == TreeType.DARK_OAK;
+        boolean isJungle = treeType == TreeType.JUNGLE;
+        boolean needsThoroughSearch = isDarkOak || isJungle;
+        
+        // Check all horizontal adjacent blocks
+        for (BlockFace face : HORIZONTAL_FACES) {
+            long adjacent = start + faceDelta(face);
+            if (isLog(view, adjacent, treeType)) {
+                addUnique(trunkBlocks, adjacent);
+                
+                // If we found a diagonal block, we need to check the other two blocks to form a 2x2 square
+                if (face == BlockFace.NORTH_EAST || face == BlockFace.SOUTH_EAST || 
+                    face == BlockFace.SOUTH_WEST || face == BlockFace.NORTH_WEST) {
+                    
+                    // Determine the two cardinal directions from the diagonal
+                    BlockFace[] cardinalFaces = getCardinalFacesFromDiagonal(face);
+                    
+                    // Check both cardinal blocks
+                    for (BlockFace cardinalFace : cardinalFaces) {
+                        long cardinalBlock = start + faceDelta(cardinalFace);
+                        if (isLog(view, cardinalBlock, treeType)) {
+                            addUnique(trunkBlocks, cardinalBlock);
+                            
+                            // Check the fourth block that would complete the 2x2 square
+                            long fourthBlock = cardinalBlock + faceDelta(face);
+                            if (isLog(view, fourthBlock, treeType)) {
+                                addUnique(trunkBlocks, fourthBlock);
+                                
+                                // For dark oak and jungle, also check blocks above and below to ensure we get the full trunk
+                                if (needsThoroughSearch) {
+                                    // Check one block above and below each trunk block
+                                    int trunkSize = trunkBlocks.size();
+                                    for (int i = 0; i < trunkSize; i++) {
+                                        long above = trunkBlocks.get(i) + UP;
+                                        long below = trunkBlocks.get(i) + DOWN;
+                                        
+                                        if (isLog(view, above, treeType)) {
+                                            addUnique(trunkBlocks, above);
+                                        }
+                                        
+                                        if (isLog(view, below, treeType)) {
+                                            addUnique(trunkBlocks, below);
+                                        }
+                                    }
+                                }
+                                
+                                return trunkBlocks; // We found a complete 2x2 trunk
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        
+        // If we didn't find a complete 2x2 trunk but this is dark oak or jungle,
+        // check cardinal directions more thoroughly
+        if (needsThoroughSearch && trunkBlocks.size() < 4) {
+            // Try to find a 2x2 trunk by checking cardinal directions
+            hasCardinal2x2Trunk(view, start, treeType, trunkBlocks);
+        }
+        
+        return trunkBlocks;
+    }
+    
+    /**
+     * Check if there's a 2x2 trunk by examining cardinal directions
+     * @param view The blocks to read
+     * @param start The packed key of the starting block
+     * @param treeType The tree type
+     * @param trunkBlocks The trunk block keys to add to
+     * @return True if a 2x2 trunk was found, false otherwise
+     */
+    private boolean hasCardinal2x2Trunk(VoxelView view, long start, TreeType treeType, LongRingDeque trunkBlocks) {
+        // Check if we can form a 2x2 trunk with this block as any of the 4 corners
+        // Format: {x1, y1, z1, x2, y2, z2, x3, y3, z3} for the three other blocks
+        int[][] offsets = {
+            {1, 0, 0, 0, 0, 1, 1, 0, 1},  // This block as NW corner
+            {-1, 0, 0, 0, 0, 1, -1, 0, 1}, // This block as NE corner
+            {1, 0, 0, 0, 0, -1, 1, 0, -1}, // This block as SW corner
+            {-1, 0, 0, 0, 0, -1, -1, 0, -1} // This block as SE corner
+        };
+        
+        for (int[] offset : offsets) {
+            long b1 = start + BlockKeys.delta(offset[0], offset[1], offset[2]);
+            long b2 = start + BlockKeys.delta(offset[3], offset[4], offset[5]);
+            long b3 = start + BlockKeys.delta(offset[6], offset[7], offset[8]);
+            
+            if (isLog(view, b1, treeType) &&
+                isLog(view, b2, treeType) &&
+                isLog(view, b3, treeType)) {
+                
+                addUnique(trunkBlocks, b1);
+                addUnique(trunkBlocks, b2);
+                addUnique(trunkBlocks, b3);
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Get the two cardinal BlockFaces that make up a diagonal BlockFace
+     * @param diagonalFace The diagonal BlockFace
+     * @return Array of the two cardinal BlockFaces
+     */
+    private static BlockFace[] getCardinalFacesFromDiagonal(BlockFace diagonalFace) {
+        switch (diagonalFace) {
+            case NORTH_EAST:
+                return new BlockFace[]{BlockFace.NORTH, BlockFace.EAST};
+            case SOUTH_EAST:
+                return new BlockFace[]{BlockFace.SOUTH, BlockFace.EAST};
+            case SOUTH_WEST:
+                return new BlockFace[]{BlockFace.SOUTH, BlockFace.WEST};
+            case NORTH_WEST:
+                return new BlockFace[]{BlockFace.NORTH, BlockFace.WEST};
+            default:
+                return new BlockFace[]{BlockFace.NORTH, BlockFace.EAST}; // Default fallback
+        }
+    }
+
+    private static long faceDelta(BlockFace face) {
+        return BlockKeys.delta(face.getModX(), face.getModY(), face.getModZ());
+    }
+
+    private static void addUnique(LongRingDeque keys, long key) {
+        for (int i = 0; i < keys.size(); i++) {
+            if (keys.get(i) == key) {
+                return;
+            }
+        }
+        keys.addLast(key);
+    }
+
+    boolean isLog(VoxelView view, long key, TreeType treeType) {
+        return classifier.getLogType(view.getType(key)) == treeType;
+    }
+
+    private static long[] toArray(LongRingDeque deque) {
+        long[] values = new long[deque.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = deque.get(i);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,202 @@
+package io.mckenz.treemaintainer.services.impl;
+
+import io.mckenz.treemaintainer.TreeMaintainer;
+import io.mckenz.treemaintainer.models.TreeType;
+import io.mckenz.treemaintainer.services.SchedulerService;
+import io.mckenz.treemaintainer.services.TrunkTracker;
+import io.mckenz.treemaintainer.utils.BlockKeys;
+import io.mckenz.treemaintainer.utils.MaterialClassifier;
+import io.mckenz.treemaintainer.utils.TimingWheel;
+import io.mckenz.treemaintainer.world.VoxelView;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Implementation of the TrunkTracker interface.
+ * The first corner broken creates a small record of the trunk's square at that
+ * height, keyed by the square's lowest corner. Later corners are four map lookups
+ * and a read of the corners still recorded. Records expire if the trunk is left
+ * half chopped.
+ */
+public class TrunkTrackerImpl implements TrunkTracker {
+
+    // Five minutes
+    private static final long STATE_TIMEOUT_TICKS = 6000;
+
+    private final TreeMaintainer plugin;
+    private final SchedulerService schedulerService;
+    private final Map<UUID, Map<Long, TrunkState>> trunksByWorld = new HashMap<>();
+    private int trackedCount;
+
+    public TrunkTrackerImpl(TreeMaintainer plugin, SchedulerService schedulerService) {
+        this.plugin = plugin;
+        this.schedulerService = schedulerService;
+    }
+
+    /**
+     * The corners of one 2x2 trunk at one height
+     */
+    private static final class TrunkState {
+        private final UUID worldId;
+        private final long squareKey;
+        private final long[] corners;
+        private int remaining;
+        private TimingWheel.Task expiry;
+
+        private TrunkState(UUID worldId, long squareKey) {
+            this.worldId = worldId;
+            this.squareKey = squareKey;
+            int x = BlockKeys.x(squareKey);
+            int y = BlockKeys.y(squareKey);
+            int z = BlockKeys.z(squareKey);
+            this.corners = new long[]{
+                    squareKey, BlockKeys.pack(x + 1, y, z), BlockKeys.pack(x, y, z + 1), BlockKeys.pack(x + 1, y, z + 1)
+            };
+        }
+
+        private int indexOf(long key) {
+            for (int i = 0; i < corners.length; i++) {
+                if (corners[i] == key) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    @Override
+    public boolean breakCorner(VoxelView view, UUID worldId, long key, TreeType treeType) {
+        MaterialClassifier classifier = plugin.getMaterialClassifier();
+        TrunkState state = findState(worldId, key);
+        if (state != null) {
+            state.remaining &= ~(1 << state.indexOf(key));
+            if (countStanding(view, state, classifier, treeType) > 0) {
+                plugin.getMetrics().increment("trunk.corner-hits");
+                return true;
+            }
+            remove(state);
+            return false;
+        }
+        
+        // First corner broken: find the square of logs this one belongs to
+        state = findSquare(view, worldId, key, classifier, treeType);
+        if (state == null) {
+            return false;
+        }
+        state.remaining &= ~(1 << state.indexOf(key));
+        TrunkState tracked = state;
+        state.expiry = schedulerService.runLater(() -> remove(tracked), STATE_TIMEOUT_TICKS);
+        trunksByWorld.computeIfAbsent(worldId, id -> new HashMap<>()).put(state.squareKey, state);
+        trackedCount++;
+        plugin.debug("Tracking 2x2 " + treeType.getConfigName() + " trunk with " + Integer.bitCount(state.remaining) + " corners left");
+        return true;
+    }
+
+    @Override
+    public boolean hasOtherCorners(VoxelView view, UUID worldId, long key, TreeType treeType) {
+        MaterialClassifier classifier = plugin.getMaterialClassifier();
+        TrunkState state = findState(worldId, key);
+        if (state != null) {
+            for (int i = 0; i < state.corners.length; i++) {
+                if ((state.remaining & (1 << i)) != 0 && state.corners[i] != key
+                        && classifier.getLogType(view.getType(state.corners[i])) == treeType) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return findSquare(view, worldId, key, classifier, treeType) != null;
+    }
+
+    @Override
+    public int getTrackedCount() {
+        return trackedCount;
+    }
+
+    @Override
+    public void clear() {
+        trunksByWorld.clear();
+        trackedCount = 0;
+    }
+
+    /**
+     * Find the tracked trunk a log is a corner of
+     * @param worldId The world the log is in
+     * @param key The packed key of the log
+     * @return The trunk, or null if the log is not a corner of a tracked trunk
+     */
+    private TrunkState findState(UUID worldId, long key) {
+        Map<Long, TrunkState> trunks = trunksByWorld.get(worldId);
+        if (trunks == null) {
+            return null;
+        }
+        int x = BlockKeys.x(key);
+        int y = BlockKeys.y(key);
+        int z = BlockKeys.z(key);
+        for (int dx = -1; dx <= 0; dx++) {
+            for (int dz = -1; dz <= 0; dz++) {
+                TrunkState state = trunks.get(BlockKeys.pack(x + dx, y, z + dz));
+                if (state != null && (state.remaining & (1 << state.indexOf(key))) != 0) {
+                    return state;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the square of logs a log forms a trunk with. Of the four squares the log
+     * could be a corner of, the one with the most logs of the tree type is chosen,
+     * so a trunk that was partly chopped before is still recognised.
+     * @return The trunk, not yet tracked, or null if no other log of the tree type is next to this one
+     */
+    private TrunkState findSquare(VoxelView view, UUID worldId, long key, MaterialClassifier classifier, TreeType treeType) {
+        int x = BlockKeys.x(key);
+        int y = BlockKeys.y(key);
+        int z = BlockKeys.z(key);
+        TrunkState best = null;
+        int bestCount = 1;
+        for (int dx = -1; dx <= 0; dx++) {
+            for (int dz = -1; dz <= 0; dz++) {
+                TrunkState candidate = new TrunkState(worldId, BlockKeys.pack(x + dx, y, z + dz));
+                candidate.remaining = 0b1111;
+                int count = countStanding(view, candidate, classifier, treeType);
+                if (count > bestCount) {
+                    best = candidate;
+                    bestCount = count;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Drop the corners of a trunk that are no longer logs of the tree type
+     * @return The number of corners still standing
+     */
+    private int countStanding(VoxelView view, TrunkState state, MaterialClassifier classifier, TreeType treeType) {
+        for (int i = 0; i < state.corners.length; i++) {
+            if ((state.remaining & (1 << i)) != 0 && classifier.getLogType(view.getType(state.corners[i])) != treeType) {
+                state.remaining &= ~(1 << i);
+            }
+        }
+        return Integer.bitCount(state.remaining);
+    }
+
+    private void remove(TrunkState state) {
+        Map<Long, TrunkState> trunks = trunksByWorld.get(state.worldId);
+        if (trunks == null || trunks.get(state.squareKey) != state) {
+            return;
+        }
+        trunks.remove(state.squareKey);
+        if (trunks.isEmpty()) {
+            trunksByWorld.remove(state.worldId);
+        }
+        if (state.expiry != null) {
+            schedulerService.cancel(state.expiry);
+        }
+        trackedCount--;
+    }
+}
@@ -0,0 +1,86 @@
+package io.mckenz.treemaintainer.utils;
+
+import org.bukkit.block.Block;
+
+/**
+ * Utility class for packing block coordinates into a single long key.
+ * 
+ * Layout (high to low bits): 26 bits X, 26 bits Z, 12 bits Y. Each field is
+ * stored with a positive bias, so a neighbour key can be computed by adding a
+ * packed delta from {@link #delta(int, int, int)} instead of unpacking.
+ */
+public final class BlockKeys {
+
+    private static final int XZ_BITS = 26;
+    private static final int Y_BITS = 12;
+    private static final int X_SHIFT = XZ_BITS + Y_BITS;
+    private static final int Z_SHIFT = Y_BITS;
+    private static final long XZ_MASK = (1L << XZ_BITS) - 1;
+    private static final long Y_MASK = (1L << Y_BITS) - 1;
+    private static final int XZ_BIAS = 1 << (XZ_BITS - 1);
+    private static final int Y_BIAS = 1 << (Y_BITS - 1);
+
+    private BlockKeys() {
+    }
+
+    /**
+     * Pack block coordinates into a key
+     * @param x The block X coordinate
+     * @param y The block Y coordinate
+     * @param z The block Z coordinate
+     * @return The packed key
+     */
+    public static long pack(int x, int y, int z) {
+        return (((x + XZ_BIAS) & XZ_MASK) << X_SHIFT)
+                | (((z + XZ_BIAS) & XZ_MASK) << Z_SHIFT)
+                | ((y + Y_BIAS) & Y_MASK);
+    }
+
+    /**
+     * Get the packed key of a block
+     * @param block The block
+     * @return The packed key
+     */
+    public static long of(Block block) {
+        return pack(block.getX(), block.getY(), block.getZ());
+    }
+
+    /**
+     * Get the X coordinate of a packed key
+     * @param key The packed key
+     * @return The block X coordinate
+     */
+    public static int x(long key) {
+        return (int) ((key >>> X_SHIFT) & XZ_MASK) - XZ_BIAS;
+    }
+
+    /**
+     * Get the Y coordinate of a packed key
+     * @param key The packed key
+     * @return The block Y coordinate
+     */
+    public static int y(long key) {
+        return (int) (key & Y_MASK) - Y_BIAS;
+    }
+
+    /**
+     * Get the Z coordinate of a packed key
+     * @param key The packed key
+     * @return The block Z coordinate
+     */
+    public static int z(long key) {
+        return (int) ((key >>> Z_SHIFT) & XZ_MASK) - XZ_BIAS;
+    }
+
+    /**
+     * Get a packed offset that can be added to a key to move by the given amount.
+     * Only valid for small offsets that keep every field inside the world.
+     * @param dx The X offset
+     * @param dy The Y offset
+     * @param dz The Z offset
+     * @return The packed delta
+     */
+    public static long delta(int dx, int dy, int dz) {
+        return ((long) dx << X_SHIFT) + ((long) dz << Z_SHIFT) + dy;
+    }
+}
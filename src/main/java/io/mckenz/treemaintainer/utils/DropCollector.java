@@ -0,0 +1,130 @@
+package io.mckenz.treemaintainer.utils;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the items dropped by the blocks of a tree and merges them into as few
+ * stacks as possible, so the whole tree spawns a handful of item entities instead
+ * of one or more per block. Not thread safe; used from the main thread only.
+ */
+public final class DropCollector {
+
+    // Plain items counted by type; only items carrying extra data are kept as stacks
+    private final Map<Material, Integer> counts = new EnumMap<>(Material.class);
+    private final List<ItemStack> stacks = new ArrayList<>();
+    private int items;
+
+    /**
+     * Add a number of plain items of one type
+     * @param type The item type
+     * @param amount The number of items
+     */
+    public void add(Material type, int amount) {
+        if (amount > 0) {
+            counts.merge(type, amount, Integer::sum);
+            items += amount;
+        }
+    }
+
+    /**
+     * Add a dropped item stack
+     * @param drop The stack to add
+     */
+    public void add(ItemStack drop) {
+        if (drop.isSimilar(new ItemStack(drop.getType()))) {
+            add(drop.getType(), drop.getAmount());
+            return;
+        }
+        
+        items += drop.getAmount();
+        for (ItemStack existing : stacks) {
+            if (existing.isSimilar(drop) && existing.getAmount() < existing.getMaxStackSize()) {
+                int moved = Math.min(drop.getAmount(), existing.getMaxStackSize() - existing.getAmount());
+                existing.setAmount(existing.getAmount() + moved);
+                drop.setAmount(drop.getAmount() - moved);
+                if (drop.getAmount() == 0) {
+                    return;
+                }
+            }
+        }
+        stacks.add(drop);
+    }
+
+    public boolean isEmpty() {
+        return items == 0;
+    }
+
+    /**
+     * Get the number of plain items of one type collected
+     * @param type The item type
+     * @return The item count, not including items carrying extra data
+     */
+    public int getCount(Material type) {
+        return counts.getOrDefault(type, 0);
+    }
+
+    /**
+     * Get the number of items collected
+     * @return The item count
+     */
+    public int getItemCount() {
+        return items;
+    }
+
+    /**
+     * Hand out the collected items and empty the collector. Items are spawned at a block if its
+     * chunk is loaded, and otherwise at the player; with neither available they are lost.
+     * @param world The world to spawn the items in
+     * @param key The packed key of the block to spawn the items at, such as the stump
+     * @param player The player to give the items to, or null to spawn them all
+     * @return The number of item stacks spawned in the world
+     */
+    public int deliver(World world, long key, Player player) {
+        Location location = null;
+        if (world.isChunkLoaded(BlockKeys.x(key) >> 4, BlockKeys.z(key) >> 4)) {
+            location = world.getBlockAt(BlockKeys.x(key), BlockKeys.y(key), BlockKeys.z(key)).getLocation();
+        } else if (player != null && player.getWorld() == world) {
+            location = player.getLocation();
+        }
+        return deliver(location, player);
+    }
+
+    private int deliver(Location location, Player player) {
+        List<ItemStack> merged = new ArrayList<>(stacks);
+        for (Map.Entry<Material, Integer> entry : counts.entrySet()) {
+            int remaining = entry.getValue();
+            while (remaining > 0) {
+                ItemStack stack = new ItemStack(entry.getKey());
+                int amount = Math.min(remaining, stack.getMaxStackSize());
+                stack.setAmount(amount);
+                merged.add(stack);
+                remaining -= amount;
+            }
+        }
+        counts.clear();
+        stacks.clear();
+        items = 0;
+        
+        if (player != null) {
+            // Only what does not fit in the inventory is spilled
+            Map<Integer, ItemStack> overflow = player.getInventory().addItem(merged.toArray(new ItemStack[0]));
+            merged = new ArrayList<>(overflow.values());
+        }
+        if (location == null) {
+            return 0;
+        }
+        for (ItemStack stack : merged) {
+            location.getWorld().dropItemNaturally(location, stack);
+        }
+        return merged.size();
+    }
+}
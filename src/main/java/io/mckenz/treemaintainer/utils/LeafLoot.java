@@ -0,0 +1,113 @@
+package io.mckenz.treemaintainer.utils;
+
+import io.mckenz.treemaintainer.models.TreeType;
+
+import org.bukkit.Material;
+import org.bukkit.enchantments.Enchantment;
+import org.bukkit.inventory.ItemStack;
+
+import java.util.Random;
+
+/**
+ * Rolls the loot of many leaf blocks of one tree type at once.
+ * Every leaf block rolls its sapling, stick and apple pools independently with the chances of the
+ * vanilla loot tables, so the total of each item over n leaves follows a binomial distribution.
+ * Drawing that total directly gives the same loot in aggregate as breaking the leaves one by one,
+ * without working out the loot table of every block.
+ */
+public final class LeafLoot {
+
+    // Chances per level of fortune, as in the vanilla leaf loot tables; higher levels use the last entry
+    private static final double[] SAPLING_CHANCES = {0.05, 0.0625, 0.083333336, 0.1};
+    private static final double[] JUNGLE_SAPLING_CHANCES = {0.025, 0.027777778, 0.03125, 0.041666668, 0.1};
+    private static final double[] STICK_CHANCES = {0.02, 0.022222223, 0.025, 0.033333335, 0.1};
+    private static final double[] APPLE_CHANCES = {0.005, 0.0055555557, 0.00625, 0.008333334, 0.025};
+
+    private LeafLoot() {
+    }
+
+    /**
+     * Roll the loot of a number of leaf blocks and add it to a collector
+     * @param treeType The tree type of the leaves
+     * @param leaves The number of leaf blocks
+     * @param tool The tool the leaves are broken with, or null if they are broken without one
+     * @param drops The collector to add the loot to
+     * @param random The random source
+     */
+    public static void roll(TreeType treeType, int leaves, ItemStack tool, DropCollector drops, Random random) {
+        // Shears and silk touch drop the leaf block itself and nothing else
+        boolean dropsSelf = tool != null && (tool.getType() == Material.SHEARS || tool.getEnchantmentLevel(Enchantment.SILK_TOUCH) > 0);
+        int fortune = tool != null ? tool.getEnchantmentLevel(Enchantment.FORTUNE) : 0;
+        roll(treeType, leaves, fortune, dropsSelf, drops, random);
+    }
+
+    /**
+     * Roll the loot of a number of leaf blocks for a tool that has already been looked at
+     * @param treeType The tree type of the leaves
+     * @param leaves The number of leaf blocks
+     * @param fortune The level of fortune on the tool
+     * @param dropsSelf Whether the tool drops the leaf blocks themselves, like shears and silk touch
+     * @param drops The collector to add the loot to
+     * @param random The random source
+     */
+    static void roll(TreeType treeType, int leaves, int fortune, boolean dropsSelf, DropCollector drops, Random random) {
+        if (leaves <= 0) {
+            return;
+        }
+        if (dropsSelf) {
+            drops.add(treeType.getLeavesMaterial(), leaves);
+            return;
+        }
+
+        // Mangrove leaves drop no propagules; propagules grow on the leaves instead
+        if (treeType != TreeType.MANGROVE) {
+            double[] chances = treeType == TreeType.JUNGLE ? JUNGLE_SAPLING_CHANCES : SAPLING_CHANCES;
+            drops.add(treeType.getSaplingMaterial(), binomial(random, leaves, chance(chances, fortune)));
+        }
+
+        // Each stick roll that succeeds drops one or two sticks
+        int stickRolls = binomial(random, leaves, chance(STICK_CHANCES, fortune));
+        drops.add(Material.STICK, stickRolls + binomial(random, stickRolls, 0.5));
+
+        if (treeType == TreeType.OAK || treeType == TreeType.DARK_OAK) {
+            drops.add(Material.APPLE, binomial(random, leaves, chance(APPLE_CHANCES, fortune)));
+        }
+    }
+
+    private static double chance(double[] chances, int fortune) {
+        return chances[Math.min(Math.max(fortune, 0), chances.length - 1)];
+    }
+
+    /**
+     * Draw the number of successes in a number of independent trials.
+     * Skips from one success to the next with geometrically distributed gaps, so the cost
+     * grows with the number of successes rather than the number of trials.
+     * @param random The random source
+     * @param trials The number of trials
+     * @param chance The chance of success of each trial
+     * @return The number of successes
+     */
+    static int binomial(Random random, int trials, double chance) {
+        if (trials <= 0 || chance <= 0) {
+            return 0;
+        }
+        if (chance >= 1) {
+            return trials;
+        }
+        if (chance > 0.5) {
+            return trials - binomial(random, trials, 1 - chance);
+        }
+
+        double logFailure = Math.log1p(-chance);
+        int successes = 0;
+        long position = 0;
+        while (true) {
+            // 1 - nextDouble() is never zero, so the logarithm stays finite
+            position += (long) (Math.log(1 - random.nextDouble()) / logFailure) + 1;
+            if (position > trials) {
+                return successes;
+            }
+            successes++;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package io.mckenz.treemaintainer.utils;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash set of primitive long keys using linear probing.
+ * Intended to be cleared and reused between scans, so the backing table only
+ * grows and is never released.
+ */
+public final class LongOpenHashSet {
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] table;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+    private boolean containsEmptyKey;
+    private long allocations;
+
+    /**
+     * Create a new set
+     * @param expectedSize The number of keys expected without growing
+     */
+    public LongOpenHashSet(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * Add a key to the set
+     * @param key The key to add
+     * @return True if the key was not already present
+     */
+    public boolean add(long key) {
+        if (key == EMPTY) {
+            if (containsEmptyKey) {
+                return false;
+            }
+            containsEmptyKey = true;
+            size++;
+            return true;
+        }
+
+        int index = mix(key) & mask;
+        long current;
+        while ((current = table[index]) != EMPTY) {
+            if (current == key) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        table[index] = key;
+        if (++size > resizeThreshold) {
+            rehash(table.length << 1);
+        }
+        return true;
+    }
+
+    /**
+     * Check whether a key is in the set
+     * @param key The key to check
+     * @return True if the key is present
+     */
+    public boolean contains(long key) {
+        if (key == EMPTY) {
+            return containsEmptyKey;
+        }
+
+        int index = mix(key) & mask;
+        long current;
+        while ((current = table[index]) != EMPTY) {
+            if (current == key) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Remove all keys while keeping the backing table
+     */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(table, EMPTY);
+            size = 0;
+            containsEmptyKey = false;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get the number of backing arrays this set has allocated
+     * @return The allocation count
+     */
+    public long getAllocations() {
+        return allocations;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldTable = table;
+        allocate(newCapacity);
+        for (long key : oldTable) {
+            if (key != EMPTY) {
+                int index = mix(key) & mask;
+                while (table[index] != EMPTY) {
+                    index = (index + 1) & mask;
+                }
+                table[index] = key;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        table = new long[capacity];
+        Arrays.fill(table, EMPTY);
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+        allocations++;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        return Math.max(16, capacity);
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
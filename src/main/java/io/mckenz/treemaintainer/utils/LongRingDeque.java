@@ -0,0 +1,119 @@
+package io.mckenz.treemaintainer.utils;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Array-backed ring buffer deque of primitive long values.
+ * Intended to be cleared and reused between scans, so the backing array only
+ * grows and is never released.
+ */
+public final class LongRingDeque {
+
+    private long[] elements;
+    private int head;
+    private int size;
+    private long allocations;
+
+    /**
+     * Create a new deque
+     * @param expectedSize The number of elements expected without growing
+     */
+    public LongRingDeque(int expectedSize) {
+        elements = new long[Math.max(16, Integer.highestOneBit(Math.max(1, expectedSize - 1)) << 1)];
+        allocations++;
+    }
+
+    /**
+     * Add a value to the end of the deque
+     * @param value The value to add
+     */
+    public void addLast(long value) {
+        if (size == elements.length) {
+            grow();
+        }
+        elements[(head + size) & (elements.length - 1)] = value;
+        size++;
+    }
+
+    /**
+     * Add a value to the front of the deque
+     * @param value The value to add
+     */
+    public void addFirst(long value) {
+        if (size == elements.length) {
+            grow();
+        }
+        head = (head - 1) & (elements.length - 1);
+        elements[head] = value;
+        size++;
+    }
+
+    /**
+     * Remove and return the first value
+     * @return The first value
+     */
+    public long pollFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        long value = elements[head];
+        head = (head + 1) & (elements.length - 1);
+        size--;
+        return value;
+    }
+
+    /**
+     * Remove and return the last value
+     * @return The last value
+     */
+    public long pollLast() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        size--;
+        return elements[(head + size) & (elements.length - 1)];
+    }
+
+    /**
+     * Get the value at a position counted from the front
+     * @param index The position
+     * @return The value
+     */
+    public long get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return elements[(head + index) & (elements.length - 1)];
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get the number of backing arrays this deque has allocated
+     * @return The allocation count
+     */
+    public long getAllocations() {
+        return allocations;
+    }
+
+    private void grow() {
+        long[] grown = new long[elements.length << 1];
+        int firstPart = Math.min(size, elements.length - head);
+        System.arraycopy(elements, head, grown, 0, firstPart);
+        System.arraycopy(elements, 0, grown, firstPart, size - firstPart);
+        elements = grown;
+        head = 0;
+        allocations++;
+    }
+}
@@ -0,0 +1,191 @@
+package io.mckenz.treemaintainer.utils;
+
+import io.mckenz.treemaintainer.models.TreeType;
+
+import org.bukkit.Material;
+import org.bukkit.Tag;
+
+import java.util.Set;
+
+/**
+ * Lookup table classifying materials as logs, leaves, saplings and soil.
+ * Built once from the enabled tree types and indexed by {@link Material#ordinal()},
+ * so each question is answered with a single array load. Instances are immutable;
+ * a new classifier is built whenever the configuration is reloaded.
+ */
+public final class MaterialClassifier {
+
+    private static final Material[] SOIL = {
+            Material.DIRT, Material.GRASS_BLOCK, Material.PODZOL, Material.COARSE_DIRT,
+            Material.ROOTED_DIRT, Material.MOSS_BLOCK, Material.MUD
+    };
+
+    private final TreeType[] logTypes;
+    private final TreeType[] woodTypes;
+    private final TreeType[] leafTypes;
+    private final TreeType[] saplingTypes;
+    private final boolean[] soil;
+    private final boolean[] decayLogs;
+    private final boolean[] decayLeaves;
+    private final boolean[] enabledTypes;
+
+    private MaterialClassifier(Set<TreeType> enabled, Set<Material> decayLogs, Set<Material> decayLeaves) {
+        int materials = Material.values().length;
+        this.logTypes = new TreeType[materials];
+        this.woodTypes = new TreeType[materials];
+        this.leafTypes = new TreeType[materials];
+        this.saplingTypes = new TreeType[materials];
+        this.soil = new boolean[materials];
+        this.decayLogs = new boolean[materials];
+        this.decayLeaves = new boolean[materials];
+        this.enabledTypes = new boolean[TreeType.values().length];
+
+        for (TreeType treeType : TreeType.values()) {
+            enabledTypes[treeType.ordinal()] = enabled.contains(treeType);
+
+            // Only natural logs make up trees; stripped logs and wood blocks are placed by players,
+            // but are still wood of the tree type for telling what a block drops
+            String wood = treeType.getLogMaterial().name().replace("_LOG", "");
+            for (String name : new String[]{"STRIPPED_" + wood + "_LOG", wood + "_WOOD", "STRIPPED_" + wood + "_WOOD"}) {
+                Material material = Material.getMaterial(name);
+                if (material != null) {
+                    woodTypes[material.ordinal()] = treeType;
+                }
+            }
+            logTypes[treeType.getLogMaterial().ordinal()] = treeType;
+            woodTypes[treeType.getLogMaterial().ordinal()] = treeType;
+            leafTypes[treeType.getLeavesMaterial().ordinal()] = treeType;
+            saplingTypes[treeType.getSaplingMaterial().ordinal()] = treeType;
+        }
+
+        for (Material material : SOIL) {
+            soil[material.ordinal()] = true;
+        }
+        for (Material material : decayLogs) {
+            this.decayLogs[material.ordinal()] = true;
+        }
+        for (Material material : decayLeaves) {
+            this.decayLeaves[material.ordinal()] = true;
+        }
+    }
+
+    /**
+     * Build a classifier
+     * @param enabled The tree types enabled in the config
+     * @return The classifier
+     */
+    public static MaterialClassifier create(Set<TreeType> enabled) {
+        return create(enabled, Tag.LOGS.getValues(), Tag.LEAVES.getValues());
+    }
+
+    /**
+     * Build a classifier with the given blocks for leaf decay, for use without a running server
+     * @param enabled The tree types enabled in the config
+     * @param decayLogs Every block that holds up leaves, as in the logs tag
+     * @param decayLeaves Every block that passes on leaf distance, as in the leaves tag
+     * @return The classifier
+     */
+    public static MaterialClassifier create(Set<TreeType> enabled, Set<Material> decayLogs, Set<Material> decayLeaves) {
+        return new MaterialClassifier(enabled, decayLogs, decayLeaves);
+    }
+
+    /**
+     * Get the tree type a natural log belongs to
+     * @param material The material to check
+     * @return The tree type, or null if the material is not a natural log
+     */
+    public TreeType getLogType(Material material) {
+        return logTypes[material.ordinal()];
+    }
+
+    /**
+     * Get the tree type of any wood block, including stripped logs and the six-sided wood blocks
+     * @param material The material to check
+     * @return The tree type, or null if the material is not a log or wood block
+     */
+    public TreeType getWoodType(Material material) {
+        return woodTypes[material.ordinal()];
+    }
+
+    /**
+     * Get the tree type of a log if that tree type is enabled
+     * @param material The material to check
+     * @return The tree type, or null if the material is not a log of an enabled tree type
+     */
+    public TreeType getEnabledLogType(Material material) {
+        TreeType treeType = logTypes[material.ordinal()];
+        return treeType != null && enabledTypes[treeType.ordinal()] ? treeType : null;
+    }
+
+    /**
+     * Get the tree type a leaf block belongs to
+     * @param material The material to check
+     * @return The tree type, or null if the material is not a leaf block
+     */
+    public TreeType getLeafType(Material material) {
+        return leafTypes[material.ordinal()];
+    }
+
+    /**
+     * Get the tree type a sapling grows into
+     * @param material The material to check
+     * @return The tree type, or null if the material is not a sapling
+     */
+    public TreeType getSaplingType(Material material) {
+        return saplingTypes[material.ordinal()];
+    }
+
+    public boolean isLog(Material material) {
+        return logTypes[material.ordinal()] != null;
+    }
+
+    public boolean isAnyLog(Material material) {
+        return woodTypes[material.ordinal()] != null;
+    }
+
+    public boolean isLeaves(Material material) {
+        return leafTypes[material.ordinal()] != null;
+    }
+
+    /**
+     * Check if a block holds up leaves for vanilla leaf decay. Covers every log and stem in the
+     * logs tag, including those of species that are not tree types of the plugin
+     * @param material The material to check
+     * @return True if leaves next to the block do not decay
+     */
+    public boolean isDecayLog(Material material) {
+        return decayLogs[material.ordinal()];
+    }
+
+    /**
+     * Check if a block passes on leaf distance for vanilla leaf decay. Covers every block in the
+     * leaves tag, including those of species that are not tree types of the plugin
+     * @param material The material to check
+     * @return True if the block is leaves of any kind
+     */
+    public boolean isDecayLeaves(Material material) {
+        return decayLeaves[material.ordinal()];
+    }
+
+    public boolean isSapling(Material material) {
+        return saplingTypes[material.ordinal()] != null;
+    }
+
+    /**
+     * Check if a material is soil that trees grow on and saplings can be planted in
+     * @param material The material to check
+     * @return True if the material is valid soil
+     */
+    public boolean isSoil(Material material) {
+        return soil[material.ordinal()];
+    }
+
+    /**
+     * Check if a tree type is enabled in the config
+     * @param treeType The tree type
+     * @return True if the tree type is enabled
+     */
+    public boolean isEnabled(TreeType treeType) {
+        return enabledTypes[treeType.ordinal()];
+    }
+}
@@ -0,0 +1,71 @@
+package io.mckenz.treemaintainer.utils;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Utility class for collecting plugin performance counters and gauges.
+ * Counters are safe to update from any thread.
+ */
+public class PerformanceMetrics {
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Increment a counter by one
+     * @param name The counter name
+     */
+    public void increment(String name) {
+        add(name, 1);
+    }
+
+    /**
+     * Add an amount to a counter
+     * @param name The counter name
+     * @param amount The amount to add
+     */
+    public void add(String name, long amount) {
+        counters.computeIfAbsent(name, key -> new LongAdder()).add(amount);
+    }
+
+    /**
+     * Get the current value of a counter
+     * @param name The counter name
+     * @return The counter value, or 0 if it has never been updated
+     */
+    public long get(String name) {
+        LongAdder counter = counters.get(name);
+        return counter != null ? counter.sum() : 0;
+    }
+
+    /**
+     * Register a gauge that is read whenever metrics are displayed
+     * @param name The gauge name
+     * @param supplier The supplier of the current value
+     */
+    public void registerGauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    /**
+     * Get all counters and gauges sorted by name
+     * @return A snapshot of all metric values
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> values = new TreeMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.sum()));
+        gauges.forEach((name, gauge) -> values.put(name, gauge.getAsLong()));
+        return values;
+    }
+
+    /**
+     * Reset all counters. Gauges are left registered.
+     */
+    public void reset() {
+        counters.values().forEach(LongAdder::reset);
+    }
+}
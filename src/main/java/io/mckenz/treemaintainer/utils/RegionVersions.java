@@ -0,0 +1,164 @@
+package io.mckenz.treemaintainer.utils;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks a modification counter for each loaded chunk that has changed.
+ * A scan records the combined version of the chunks it covers, so it can later
+ * tell whether anything in its region has changed without reading the world.
+ *
+ * Counters of unloaded chunks are dropped in batches, so the map only holds the
+ * chunks that changed while loaded plus one batch. A dropped counter is folded
+ * into a base shared by the whole world, which keeps every combined version from
+ * going down; areas that did not contain the dropped chunks merely see a change.
+ */
+public class RegionVersions {
+
+    // Unloaded chunks with a counter that are dropped together
+    private static final int PRUNE_BATCH = 1024;
+
+    private final Map<UUID, WorldVersions> versions = new ConcurrentHashMap<>();
+
+    /**
+     * The counters of one world
+     */
+    private static final class WorldVersions {
+        private final Map<Long, Long> chunks = new ConcurrentHashMap<>();
+        private final Set<Long> unloaded = ConcurrentHashMap.newKeySet();
+        private volatile long base;
+    }
+
+    /**
+     * Record a change to the block at the given position
+     * @param worldId The world of the block
+     * @param x The block X coordinate
+     * @param z The block Z coordinate
+     */
+    public void markChanged(UUID worldId, int x, int z) {
+        WorldVersions world = versions.computeIfAbsent(worldId, id -> new WorldVersions());
+        long key = chunkKey(x >> 4, z >> 4);
+        world.chunks.merge(key, 1L, Long::sum);
+        if (!world.unloaded.isEmpty()) {
+            world.unloaded.remove(key);
+        }
+    }
+
+    /**
+     * Get the combined version of all chunks overlapping a block area.
+     * The value only ever grows, and it changes whenever any of the chunks changes.
+     * @param worldId The world of the area
+     * @param minX The minimum block X coordinate
+     * @param minZ The minimum block Z coordinate
+     * @param maxX The maximum block X coordinate
+     * @param maxZ The maximum block Z coordinate
+     * @return The combined version
+     */
+    public long getVersion(UUID worldId, int minX, int minZ, int maxX, int maxZ) {
+        WorldVersions world = versions.get(worldId);
+        if (world == null) {
+            return 0;
+        }
+
+        long version = world.base;
+        for (int chunkX = minX >> 4; chunkX <= maxX >> 4; chunkX++) {
+            for (int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; chunkZ++) {
+                Long chunkVersion = world.chunks.get(chunkKey(chunkX, chunkZ));
+                if (chunkVersion != null) {
+                    version += chunkVersion;
+                }
+            }
+        }
+        return version;
+    }
+
+    /**
+     * Get the counter of a single chunk, without the world's base
+     * @param worldId The world of the chunk
+     * @param chunkX The chunk's X coordinate
+     * @param chunkZ The chunk's Z coordinate
+     * @return The chunk's counter
+     */
+    public long getChunkVersion(UUID worldId, int chunkX, int chunkZ) {
+        WorldVersions world = versions.get(worldId);
+        Long chunkVersion = world != null ? world.chunks.get(chunkKey(chunkX, chunkZ)) : null;
+        return chunkVersion != null ? chunkVersion : 0;
+    }
+
+    /**
+     * Get the part of every combined version that comes from the dropped counters of a world
+     * @param worldId The world
+     * @return The world's base version
+     */
+    public long getBaseVersion(UUID worldId) {
+        WorldVersions world = versions.get(worldId);
+        return world != null ? world.base : 0;
+    }
+
+    /**
+     * Mark a chunk's counter for dropping, and drop the marked counters once there are enough of them
+     * @param worldId The world of the chunk
+     * @param chunkX The chunk's X coordinate
+     * @param chunkZ The chunk's Z coordinate
+     */
+    public void chunkUnloaded(UUID worldId, int chunkX, int chunkZ) {
+        WorldVersions world = versions.get(worldId);
+        long key = chunkKey(chunkX, chunkZ);
+        if (world == null || !world.chunks.containsKey(key)) {
+            return;
+        }
+        world.unloaded.add(key);
+        if (world.unloaded.size() < PRUNE_BATCH) {
+            return;
+        }
+
+        long dropped = 0;
+        for (Long unloadedKey : world.unloaded) {
+            Long chunkVersion = world.chunks.remove(unloadedKey);
+            if (chunkVersion != null) {
+                dropped += chunkVersion;
+            }
+        }
+        world.unloaded.clear();
+        world.base += dropped;
+    }
+
+    /**
+     * Keep the counter of a chunk that loaded again before it was dropped
+     * @param worldId The world of the chunk
+     * @param chunkX The chunk's X coordinate
+     * @param chunkZ The chunk's Z coordinate
+     */
+    public void chunkLoaded(UUID worldId, int chunkX, int chunkZ) {
+        WorldVersions world = versions.get(worldId);
+        if (world != null && !world.unloaded.isEmpty()) {
+            world.unloaded.remove(chunkKey(chunkX, chunkZ));
+        }
+    }
+
+    /**
+     * Forget all versions for a world
+     * @param worldId The world to forget
+     */
+    public void clearWorld(UUID worldId) {
+        versions.remove(worldId);
+    }
+
+    /**
+     * Get the number of chunk counters held across all worlds
+     * @return The number of counters
+     */
+    public int getTrackedChunks() {
+        int count = 0;
+        for (WorldVersions world : versions.values()) {
+            count += world.chunks.size();
+        }
+        return count;
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,135 @@
+package io.mckenz.treemaintainer.utils;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reusable scratch space for block scans.
+ * 
+ * Each thread owns one workspace that is handed out by {@link #acquire()} and
+ * returned with {@link #close()}. Once its tables have grown to fit the largest
+ * tree seen, a scan on that thread allocates nothing. Scans that are suspended
+ * between ticks use {@link #acquireDetached()} instead, which hands out a
+ * workspace from a small shared pool. Every backing array or workspace created
+ * is counted so the effect can be checked at runtime.
+ */
+public final class ScanWorkspace implements AutoCloseable {
+
+    private static final int INITIAL_CAPACITY = 512;
+    private static final int MAX_POOLED = 8;
+    private static final ThreadLocal<ScanWorkspace> CURRENT = ThreadLocal.withInitial(() -> new ScanWorkspace(false));
+    private static final ConcurrentLinkedQueue<ScanWorkspace> POOL = new ConcurrentLinkedQueue<>();
+    private static final LongAdder ALLOCATIONS = new LongAdder();
+    private static final LongAdder SCANS = new LongAdder();
+
+    private final LongOpenHashSet visited = new LongOpenHashSet(INITIAL_CAPACITY);
+    private final LongOpenHashSet members = new LongOpenHashSet(INITIAL_CAPACITY);
+    private final LongRingDeque queue = new LongRingDeque(INITIAL_CAPACITY);
+    private final LongRingDeque list = new LongRingDeque(INITIAL_CAPACITY);
+    private final boolean detached;
+    private long knownAllocations;
+    private boolean inUse;
+
+    private ScanWorkspace(boolean detached) {
+        this.detached = detached;
+        knownAllocations = countAllocations();
+        ALLOCATIONS.add(knownAllocations);
+    }
+
+    /**
+     * Get this thread's workspace, cleared and ready to use.
+     * If it is already in use by an enclosing scan, a temporary one is created.
+     * @return The workspace
+     */
+    public static ScanWorkspace acquire() {
+        ScanWorkspace workspace = CURRENT.get();
+        if (workspace.inUse) {
+            workspace = new ScanWorkspace(false);
+        }
+        return workspace.prepare();
+    }
+
+    /**
+     * Get a workspace that is not tied to the current thread, cleared and ready to use.
+     * It may be kept across ticks and must be returned with {@link #close()} when the scan ends.
+     * @return The workspace
+     */
+    public static ScanWorkspace acquireDetached() {
+        ScanWorkspace workspace = POOL.poll();
+        if (workspace == null) {
+            workspace = new ScanWorkspace(true);
+        }
+        return workspace.prepare();
+    }
+
+    private ScanWorkspace prepare() {
+        inUse = true;
+        visited.clear();
+        members.clear();
+        queue.clear();
+        list.clear();
+        SCANS.increment();
+        return this;
+    }
+
+    public LongOpenHashSet visited() {
+        return visited;
+    }
+
+    /**
+     * Get a second key set for scans that test membership in a known block set
+     * @return The member set
+     */
+    public LongOpenHashSet members() {
+        return members;
+    }
+
+    public LongRingDeque queue() {
+        return queue;
+    }
+
+    /**
+     * Get a second deque for scans that keep an ordered list of blocks while searching
+     * @return The list
+     */
+    public LongRingDeque list() {
+        return list;
+    }
+
+    /**
+     * Return the workspace to its thread or pool and record any growth of its tables
+     */
+    @Override
+    public void close() {
+        if (!inUse) {
+            return;
+        }
+        long allocations = countAllocations();
+        ALLOCATIONS.add(allocations - knownAllocations);
+        knownAllocations = allocations;
+        inUse = false;
+        if (detached && POOL.size() < MAX_POOLED) {
+            POOL.offer(this);
+        }
+    }
+
+    private long countAllocations() {
+        return visited.getAllocations() + members.getAllocations() + queue.getAllocations() + list.getAllocations();
+    }
+
+    /**
+     * Get the total number of arrays allocated by scan workspaces
+     * @return The allocation count
+     */
+    public static long getAllocationCount() {
+        return ALLOCATIONS.sum();
+    }
+
+    /**
+     * Get the total number of scans that acquired a workspace
+     * @return The scan count
+     */
+    public static long getScanCount() {
+        return SCANS.sum();
+    }
+}
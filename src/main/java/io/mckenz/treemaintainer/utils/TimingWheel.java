@@ -0,0 +1,219 @@
+package io.mckenz.treemaintainer.utils;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel of delayed tasks, measured in ticks.
+ * The first level has one slot per tick for the next 256 ticks; each higher level
+ * has 64 slots that each cover a whole turn of the level below. Scheduling and
+ * cancelling a task are constant time, and advancing the wheel by one tick only
+ * touches the slot that is due, moving tasks down a level when a higher slot
+ * comes up. Not thread safe; the wheel is used from the main thread only.
+ */
+public final class TimingWheel {
+
+    private static final int LEVEL_0_BITS = 8;
+    private static final int LEVEL_BITS = 6;
+    private static final int LEVELS = 4;
+    // Delays beyond the last level are clamped to it, about 12 days of ticks
+    private static final long MAX_DELAY = (1L << (LEVEL_0_BITS + LEVEL_BITS * (LEVELS - 1))) - 1;
+
+    private final Task[][] heads = new Task[LEVELS][];
+    private long currentTick;
+    private int size;
+
+    public TimingWheel() {
+        heads[0] = new Task[1 << LEVEL_0_BITS];
+        for (int level = 1; level < LEVELS; level++) {
+            heads[level] = new Task[1 << LEVEL_BITS];
+        }
+    }
+
+    /**
+     * A task scheduled on the wheel
+     */
+    public static final class Task {
+        private final Runnable action;
+        private long deadline;
+        private int level = -1;
+        private int slot;
+        private Task prev;
+        private Task next;
+        private boolean cancelled;
+
+        private Task(Runnable action, long deadline) {
+            this.action = action;
+            this.deadline = deadline;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Get the tick the task is due on
+         * @return The due tick
+         */
+        public long getDeadline() {
+            return deadline;
+        }
+    }
+
+    /**
+     * Schedule a task
+     * @param action The task to run
+     * @param delayTicks The number of ticks to wait; values below 1 run the task on the next tick
+     * @return The scheduled task, which can be passed to {@link #cancel(Task)}
+     */
+    public Task schedule(Runnable action, long delayTicks) {
+        long delay = Math.min(Math.max(1, delayTicks), MAX_DELAY);
+        Task task = new Task(action, currentTick + delay);
+        insert(task);
+        size++;
+        return task;
+    }
+
+    /**
+     * Put a task back on the wheel, whether it is waiting, cancelled or has already run.
+     * The task keeps its identity, so callers holding it can still cancel it.
+     * @param task The task to schedule again
+     * @param delayTicks The number of ticks to wait; values below 1 run the task on the next tick
+     */
+    public void reschedule(Task task, long delayTicks) {
+        if (task.level >= 0) {
+            unlink(task);
+        } else {
+            size++;
+        }
+        task.cancelled = false;
+        task.deadline = currentTick + Math.min(Math.max(1, delayTicks), MAX_DELAY);
+        insert(task);
+    }
+
+    /**
+     * Cancel a task that has not run yet
+     * @param task The task to cancel
+     * @return True if the task was waiting and is now cancelled
+     */
+    public boolean cancel(Task task) {
+        if (task.level < 0) {
+            return false;
+        }
+        unlink(task);
+        task.cancelled = true;
+        size--;
+        return true;
+    }
+
+    /**
+     * Advance the wheel by one tick and run every task that is due
+     * @param errorHandler Called with any exception thrown by a task; the remaining tasks still run
+     * @return The number of tasks run
+     */
+    public int advance(Consumer<RuntimeException> errorHandler) {
+        currentTick++;
+
+        // Move the tasks of higher slots that have come up down towards the first level
+        for (int level = 1; level < LEVELS; level++) {
+            int shift = LEVEL_0_BITS + LEVEL_BITS * (level - 1);
+            if ((currentTick & ((1L << shift) - 1)) != 0) {
+                break;
+            }
+            int slot = (int) ((currentTick >>> shift) & ((1 << LEVEL_BITS) - 1));
+            Task task = heads[level][slot];
+            heads[level][slot] = null;
+            while (task != null) {
+                Task next = task.next;
+                task.prev = null;
+                task.next = null;
+                insert(task);
+                task = next;
+            }
+        }
+
+        int slot = (int) (currentTick & ((1 << LEVEL_0_BITS) - 1));
+        Task task = heads[0][slot];
+        heads[0][slot] = null;
+        int ran = 0;
+        while (task != null) {
+            Task next = task.next;
+            task.prev = null;
+            task.next = null;
+            task.level = -1;
+            size--;
+            try {
+                task.action.run();
+            } catch (RuntimeException e) {
+                errorHandler.accept(e);
+            }
+            ran++;
+            task = next;
+        }
+        return ran;
+    }
+
+    /**
+     * Remove every task without running it
+     */
+    public void clear() {
+        for (Task[] level : heads) {
+            for (int slot = 0; slot < level.length; slot++) {
+                for (Task task = level[slot]; task != null; task = task.next) {
+                    task.level = -1;
+                    task.cancelled = true;
+                }
+                level[slot] = null;
+            }
+        }
+        size = 0;
+    }
+
+    /**
+     * Get the number of tasks waiting to run
+     * @return The number of tasks
+     */
+    public int size() {
+        return size;
+    }
+
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    private void insert(Task task) {
+        long delay = task.deadline - currentTick;
+        int level = 0;
+        int shift = 0;
+        int bits = LEVEL_0_BITS;
+        // A task goes in the lowest level whose range covers its delay
+        while (level < LEVELS - 1 && delay >= (1L << (shift + bits))) {
+            shift += bits;
+            bits = LEVEL_BITS;
+            level++;
+        }
+        int slot = (int) ((task.deadline >>> shift) & ((1 << bits) - 1));
+
+        task.level = level;
+        task.slot = slot;
+        task.prev = null;
+        task.next = heads[level][slot];
+        if (task.next != null) {
+            task.next.prev = task;
+        }
+        heads[level][slot] = task;
+    }
+
+    private void unlink(Task task) {
+        if (task.prev != null) {
+            task.prev.next = task.next;
+        } else {
+            heads[task.level][task.slot] = task.next;
+        }
+        if (task.next != null) {
+            task.next.prev = task.prev;
+        }
+        task.prev = null;
+        task.next = null;
+        task.level = -1;
+    }
+}
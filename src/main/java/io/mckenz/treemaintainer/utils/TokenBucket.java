@@ -0,0 +1,60 @@
+package io.mckenz.treemaintainer.utils;
+
+/**
+ * Token bucket for rate limiting work by its cost.
+ * Tokens refill continuously up to the bucket's capacity. The rate and capacity are
+ * passed on every call, so a config reload applies to existing buckets. Work costing
+ * more than the capacity is allowed once the bucket is full and leaves it in debt,
+ * so a single large tree is never blocked forever. Not thread safe.
+ */
+public final class TokenBucket {
+
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * Create a full bucket
+     * @param capacity The maximum number of tokens
+     */
+    public TokenBucket(double capacity) {
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Check whether work of a cost may run now
+     * @param cost The cost of the work
+     * @param ratePerSecond The number of tokens added per second
+     * @param capacity The maximum number of tokens
+     * @return True if the bucket has enough tokens
+     */
+    public boolean canAcquire(double cost, double ratePerSecond, double capacity) {
+        refill(ratePerSecond, capacity);
+        return tokens >= Math.min(cost, capacity);
+    }
+
+    /**
+     * Take the tokens for work that is about to run
+     * @param cost The cost of the work
+     */
+    public void consume(double cost) {
+        tokens -= cost;
+    }
+
+    /**
+     * Check whether the bucket has refilled completely, so it no longer needs to be kept
+     * @param ratePerSecond The number of tokens added per second
+     * @param capacity The maximum number of tokens
+     * @return True if the bucket is full
+     */
+    public boolean isFull(double ratePerSecond, double capacity) {
+        refill(ratePerSecond, capacity);
+        return tokens >= capacity;
+    }
+
+    private void refill(double ratePerSecond, double capacity) {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) / 1_000_000_000.0 * ratePerSecond);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,130 @@
+package io.mckenz.treemaintainer.world;
+
+import io.mckenz.treemaintainer.utils.BlockKeys;
+
+import org.bukkit.Material;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * In-memory box of block types. Needs no server, so it can be used to run tree
+ * detection in benchmarks and tests. Every position starts as air.
+ */
+public class ArrayVoxelView implements VoxelView {
+
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final Material[] types;
+    private final BitSet persistent;
+
+    /**
+     * Create a new view
+     * @param minX The minimum block X coordinate
+     * @param minY The minimum block Y coordinate
+     * @param minZ The minimum block Z coordinate
+     * @param sizeX The width along X
+     * @param sizeY The height along Y
+     * @param sizeZ The width along Z
+     */
+    public ArrayVoxelView(int minX, int minY, int minZ, int sizeX, int sizeY, int sizeZ) {
+        if (sizeX <= 0 || sizeY <= 0 || sizeZ <= 0) {
+            throw new IllegalArgumentException("View size must be positive");
+        }
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.types = new Material[sizeX * sizeY * sizeZ];
+        Arrays.fill(types, Material.AIR);
+        this.persistent = new BitSet(types.length);
+    }
+
+    /**
+     * Set the type of a block
+     * @param x The block X coordinate
+     * @param y The block Y coordinate
+     * @param z The block Z coordinate
+     * @param type The block type
+     */
+    public void setType(int x, int y, int z, Material type) {
+        int index = indexOf(x, y, z);
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Position " + x + "," + y + "," + z + " is outside the view");
+        }
+        types[index] = type;
+    }
+
+    /**
+     * Mark a leaf block as placed by a player, so it never decays
+     * @param x The block X coordinate
+     * @param y The block Y coordinate
+     * @param z The block Z coordinate
+     * @param value True if the leaves are persistent
+     */
+    public void setPersistent(int x, int y, int z, boolean value) {
+        int index = indexOf(x, y, z);
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Position " + x + "," + y + "," + z + " is outside the view");
+        }
+        persistent.set(index, value);
+    }
+
+    @Override
+    public Material getType(long key) {
+        int index = indexOf(BlockKeys.x(key), BlockKeys.y(key), BlockKeys.z(key));
+        return index >= 0 ? types[index] : Material.AIR;
+    }
+
+    @Override
+    public boolean isPersistentLeaves(long key) {
+        int index = indexOf(BlockKeys.x(key), BlockKeys.y(key), BlockKeys.z(key));
+        return index >= 0 && persistent.get(index);
+    }
+
+    @Override
+    public int getMinX() {
+        return minX;
+    }
+
+    @Override
+    public int getMinY() {
+        return minY;
+    }
+
+    @Override
+    public int getMinZ() {
+        return minZ;
+    }
+
+    @Override
+    public int getMaxX() {
+        return minX + sizeX - 1;
+    }
+
+    @Override
+    public int getMaxY() {
+        return minY + sizeY - 1;
+    }
+
+    @Override
+    public int getMaxZ() {
+        return minZ + sizeZ - 1;
+    }
+
+    private int indexOf(int x, int y, int z) {
+        int i = x - minX;
+        int j = y - minY;
+        int k = z - minZ;
+        if (i < 0 || j < 0 || k < 0 || i >= sizeX || j >= sizeY || k >= sizeZ) {
+            return -1;
+        }
+        return (j * sizeZ + k) * sizeX + i;
+    }
+}
@@ -0,0 +1,160 @@
+package io.mckenz.treemaintainer.world;
+
+import io.mckenz.treemaintainer.utils.BlockKeys;
+import io.mckenz.treemaintainer.utils.RegionVersions;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.data.type.Leaves;
+
+/**
+ * View of a square of chunk snapshots around a block that can be read from any thread.
+ * Positions in chunks that were not loaded at capture time read as air.
+ * The version of every captured chunk is recorded at capture time, so scans
+ * taken from the snapshots can be checked against later world changes.
+ */
+public class ChunkSnapshotView implements VoxelView {
+
+    private final int minChunkX;
+    private final int minChunkZ;
+    private final int size;
+    private final int minY;
+    private final int maxY;
+    private final ChunkSnapshot[] snapshots;
+    private final long[] versions;
+    private long baseVersion;
+
+    private ChunkSnapshotView(int minChunkX, int minChunkZ, int size, int minY, int maxY) {
+        this.minChunkX = minChunkX;
+        this.minChunkZ = minChunkZ;
+        this.size = size;
+        this.minY = minY;
+        this.maxY = maxY;
+        this.snapshots = new ChunkSnapshot[size * size];
+        this.versions = new long[size * size];
+    }
+
+    /**
+     * Capture the loaded chunks around a block. Must be called on the main thread.
+     * Chunks that are not loaded are skipped rather than loaded.
+     * @param world The world to capture from
+     * @param blockX The X coordinate of the centre block
+     * @param blockZ The Z coordinate of the centre block
+     * @param radius The radius in chunks around the centre chunk
+     * @param regionVersions The region versions to record
+     * @return The captured view
+     */
+    public static ChunkSnapshotView capture(World world, int blockX, int blockZ, int radius, RegionVersions regionVersions) {
+        int centreX = blockX >> 4;
+        int centreZ = blockZ >> 4;
+        int size = radius * 2 + 1;
+        ChunkSnapshotView view = new ChunkSnapshotView(centreX - radius, centreZ - radius, size, world.getMinHeight(), world.getMaxHeight() - 1);
+        view.baseVersion = regionVersions.getBaseVersion(world.getUID());
+
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int chunkX = view.minChunkX + i;
+                int chunkZ = view.minChunkZ + j;
+                if (world.isChunkLoaded(chunkX, chunkZ)) {
+                    view.snapshots[i * size + j] = world.getChunkAt(chunkX, chunkZ).getChunkSnapshot(false, false, false);
+                    view.versions[i * size + j] = regionVersions.getChunkVersion(world.getUID(), chunkX, chunkZ);
+                }
+            }
+        }
+        return view;
+    }
+
+    @Override
+    public Material getType(long key) {
+        int y = BlockKeys.y(key);
+        if (y < minY || y > maxY) {
+            return Material.AIR;
+        }
+        int x = BlockKeys.x(key);
+        int z = BlockKeys.z(key);
+        int index = indexOf(x >> 4, z >> 4);
+        ChunkSnapshot snapshot = index >= 0 ? snapshots[index] : null;
+        return snapshot != null ? snapshot.getBlockType(x & 15, y, z & 15) : Material.AIR;
+    }
+
+    @Override
+    public boolean isPersistentLeaves(long key) {
+        int y = BlockKeys.y(key);
+        if (y < minY || y > maxY) {
+            return false;
+        }
+        int x = BlockKeys.x(key);
+        int z = BlockKeys.z(key);
+        int index = indexOf(x >> 4, z >> 4);
+        ChunkSnapshot snapshot = index >= 0 ? snapshots[index] : null;
+        return snapshot != null && snapshot.getBlockData(x & 15, y, z & 15) instanceof Leaves leaves && leaves.isPersistent();
+    }
+
+    @Override
+    public boolean isLoaded(long key) {
+        int index = indexOf(BlockKeys.x(key) >> 4, BlockKeys.z(key) >> 4);
+        return index < 0 || snapshots[index] != null;
+    }
+
+    /**
+     * Get the combined version, at capture time, of the chunks overlapping a block area.
+     * Matches {@link RegionVersions#getVersion} for the same area if nothing has changed since.
+     * @param minX The minimum block X coordinate
+     * @param minZ The minimum block Z coordinate
+     * @param maxX The maximum block X coordinate
+     * @param maxZ The maximum block Z coordinate
+     * @return The combined version
+     */
+    public long getVersion(int minX, int minZ, int maxX, int maxZ) {
+        long version = baseVersion;
+        for (int chunkX = minX >> 4; chunkX <= maxX >> 4; chunkX++) {
+            for (int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; chunkZ++) {
+                int index = indexOf(chunkX, chunkZ);
+                if (index >= 0) {
+                    version += versions[index];
+                }
+            }
+        }
+        return version;
+    }
+
+    @Override
+    public int getMinX() {
+        return minChunkX << 4;
+    }
+
+    @Override
+    public int getMinY() {
+        return minY;
+    }
+
+    @Override
+    public int getMinZ() {
+        return minChunkZ << 4;
+    }
+
+    @Override
+    public int getMaxX() {
+        return ((minChunkX + size) << 4) - 1;
+    }
+
+    @Override
+    public int getMaxY() {
+        return maxY;
+    }
+
+    @Override
+    public int getMaxZ() {
+        return ((minChunkZ + size) << 4) - 1;
+    }
+
+    private int indexOf(int chunkX, int chunkZ) {
+        int i = chunkX - minChunkX;
+        int j = chunkZ - minChunkZ;
+        if (i < 0 || j < 0 || i >= size || j >= size) {
+            return -1;
+        }
+        return i * size + j;
+    }
+}
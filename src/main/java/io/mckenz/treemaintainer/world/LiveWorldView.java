@@ -0,0 +1,89 @@
+package io.mckenz.treemaintainer.world;
+
+import io.mckenz.treemaintainer.utils.BlockKeys;
+
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.block.data.type.Leaves;
+
+/**
+ * View of the live world. Must only be read on the main thread.
+ * Reading never loads a chunk: positions in chunks that are not loaded read as air.
+ */
+public class LiveWorldView implements VoxelView {
+
+    private static final int WORLD_LIMIT = 30_000_000;
+
+    private final World world;
+    private final int minY;
+    private final int maxY;
+
+    public LiveWorldView(World world) {
+        this.world = world;
+        this.minY = world.getMinHeight();
+        this.maxY = world.getMaxHeight() - 1;
+    }
+
+    public World getWorld() {
+        return world;
+    }
+
+    @Override
+    public Material getType(long key) {
+        int y = BlockKeys.y(key);
+        int x = BlockKeys.x(key);
+        int z = BlockKeys.z(key);
+        if (y < minY || y > maxY || !world.isChunkLoaded(x >> 4, z >> 4)) {
+            return Material.AIR;
+        }
+        return world.getType(x, y, z);
+    }
+
+    @Override
+    public boolean isPersistentLeaves(long key) {
+        int y = BlockKeys.y(key);
+        int x = BlockKeys.x(key);
+        int z = BlockKeys.z(key);
+        if (y < minY || y > maxY || !world.isChunkLoaded(x >> 4, z >> 4)) {
+            return false;
+        }
+        BlockData data = world.getBlockData(x, y, z);
+        return data instanceof Leaves leaves && leaves.isPersistent();
+    }
+
+    @Override
+    public boolean isLoaded(long key) {
+        return world.isChunkLoaded(BlockKeys.x(key) >> 4, BlockKeys.z(key) >> 4);
+    }
+
+    @Override
+    public int getMinX() {
+        return -WORLD_LIMIT;
+    }
+
+    @Override
+    public int getMinY() {
+        return minY;
+    }
+
+    @Override
+    public int getMinZ() {
+        return -WORLD_LIMIT;
+    }
+
+    @Override
+    public int getMaxX() {
+        return WORLD_LIMIT - 1;
+    }
+
+    @Override
+    public int getMaxY() {
+        return maxY;
+    }
+
+    @Override
+    public int getMaxZ() {
+        return WORLD_LIMIT - 1;
+    }
+}
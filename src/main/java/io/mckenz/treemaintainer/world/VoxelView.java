@@ -0,0 +1,63 @@
+package io.mckenz.treemaintainer.world;
+
+import io.mckenz.treemaintainer.utils.BlockKeys;
+
+import org.bukkit.Material;
+
+/**
+ * Read-only view of block types, addressed by packed block keys.
+ * Tree detection works against this interface so the same code can run on the
+ * live world, on chunk snapshots off the main thread, or on an in-memory array
+ * without a running server.
+ */
+public interface VoxelView {
+
+    /**
+     * Get the type of a block. Positions outside the bounds read as air.
+     * @param key The packed block key
+     * @return The block type
+     */
+    Material getType(long key);
+
+    /**
+     * Check whether a block is a leaf block that was placed by a player and never decays
+     * @param key The packed block key
+     * @return True if the block is persistent leaves
+     */
+    boolean isPersistentLeaves(long key);
+
+    /**
+     * Check whether the chunk holding a position is available, so reading the position does not load it
+     * @param key The packed block key
+     * @return True if the position can be read without loading a chunk
+     */
+    default boolean isLoaded(long key) {
+        return true;
+    }
+
+    int getMinX();
+
+    int getMinY();
+
+    int getMinZ();
+
+    int getMaxX();
+
+    int getMaxY();
+
+    int getMaxZ();
+
+    /**
+     * Check whether a position lies inside this view's bounds (inclusive)
+     * @param key The packed block key
+     * @return True if the position can be read
+     */
+    default boolean contains(long key) {
+        int x = BlockKeys.x(key);
+        int y = BlockKeys.y(key);
+        int z = BlockKeys.z(key);
+        return x >= getMinX() && x <= getMaxX()
+                && y >= getMinY() && y <= getMaxY()
+                && z >= getMinZ() && z <= getMaxZ();
+    }
+}
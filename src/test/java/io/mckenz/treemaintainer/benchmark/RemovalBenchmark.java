@@ -0,0 +1,231 @@
+package io.mckenz.treemaintainer.benchmark;
+
+import io.mckenz.treemaintainer.models.RemovalPlan;
+import io.mckenz.treemaintainer.models.ShapeProfile;
+import io.mckenz.treemaintainer.models.TreeScan;
+import io.mckenz.treemaintainer.models.TreeType;
+import io.mckenz.treemaintainer.services.impl.TreeScanner;
+import io.mckenz.treemaintainer.utils.BlockKeys;
+import io.mckenz.treemaintainer.utils.DropCollector;
+import io.mckenz.treemaintainer.utils.LeafLoot;
+import io.mckenz.treemaintainer.utils.MaterialClassifier;
+import io.mckenz.treemaintainer.world.ArrayVoxelView;
+
+import org.bukkit.Material;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Compares the natural and fast-break removal paths on generated trees, without a server.
+ * The work both paths share on the main thread, planning the removal, is timed for reference;
+ * what differs is timed and counted on its own:
+ * <ul>
+ *   <li>ordering: fast-break sorts the plan top-down and outside-in with {@link RemovalPlan#inRemovalOrder()}</li>
+ *   <li>drops: the natural path rolls every leaf and spawns an item entity for every drop of every block,
+ *       while fast-break collects the drops of the tree and rolls its leaves in bulk</li>
+ * </ul>
+ * The trees cover a small and a large oak and the 2x2 trunks of dark oak and giant jungle trees.
+ * The block changes themselves need a live world; compare them with the removal.fast and removal.natural
+ * metrics in /tm stats.
+ * <p>
+ * Run with {@code mvn test-compile} and then
+ * {@code java -cp target/classes:target/test-classes:<spigot-api jar> io.mckenz.treemaintainer.benchmark.RemovalBenchmark}
+ */
+public final class RemovalBenchmark {
+
+    private static final int WARMUP_ROUNDS = 2000;
+    private static final int MEASURED_ROUNDS = 5000;
+    private static final int MAX_DISTANCE = 64;
+
+    private RemovalBenchmark() {
+    }
+
+    /**
+     * The shape of a generated tree
+     * @param name The name of the tree in the report
+     * @param treeType The tree type, which picks the log and leaf materials and the loot
+     * @param height The height of the trunk
+     * @param radius The radius of the canopy
+     * @param flatness How much the canopy is squashed vertically, 1 for round
+     * @param branches The number of branch levels, each adding four diagonal branches
+     * @param wide Whether the trunk is 2x2
+     */
+    private record Shape(String name, TreeType treeType, int height, int radius, int flatness, int branches, boolean wide) {
+    }
+
+    public static void main(String[] args) {
+        Set<TreeType> all = EnumSet.allOf(TreeType.class);
+        Set<Material> logs = EnumSet.noneOf(Material.class);
+        Set<Material> leaves = EnumSet.noneOf(Material.class);
+        Map<TreeType, ShapeProfile> profiles = new EnumMap<>(TreeType.class);
+        for (TreeType treeType : all) {
+            logs.add(treeType.getLogMaterial());
+            leaves.add(treeType.getLeavesMaterial());
+            profiles.put(treeType, ShapeProfile.defaultFor(treeType));
+        }
+        TreeScanner scanner = new TreeScanner(MaterialClassifier.create(all, logs, leaves), profiles);
+
+        System.out.printf("%-10s %6s %6s | %10s %10s %10s | %12s %12s | %9s %9s%n",
+                "tree", "logs", "leaves", "plan ns", "order ns", "leaf ns",
+                "natural ns", "fast ns", "natural", "fast");
+        System.out.printf("%-10s %6s %6s | %10s %10s %10s | %12s %12s | %9s %9s%n",
+                "", "", "", "", "", "", "drops", "drops", "entities", "entities");
+        run(scanner, new Shape("oak", TreeType.OAK, 6, 2, 1, 0, false));
+        run(scanner, new Shape("large oak", TreeType.OAK, 16, 4, 1, 2, false));
+        run(scanner, new Shape("dark oak", TreeType.DARK_OAK, 8, 5, 2, 1, true));
+        run(scanner, new Shape("jungle", TreeType.JUNGLE, 28, 6, 2, 3, true));
+    }
+
+    /**
+     * Measure one generated tree
+     * @param scanner The scanner to plan with
+     * @param shape The shape of the tree
+     */
+    private static void run(TreeScanner scanner, Shape shape) {
+        int size = 2 * (shape.radius() + shape.branches() + 4) + 1;
+        int sizeY = shape.height() + shape.radius() + 4;
+        int centre = size / 2;
+        ArrayVoxelView view = new ArrayVoxelView(0, 0, 0, size, sizeY, size);
+        buildTree(view, centre, shape);
+
+        UUID worldId = new UUID(0, 0);
+        long origin = BlockKeys.pack(centre, 1, centre);
+        TreeScan scan = scanner.scan(view, worldId, origin, MAX_DISTANCE);
+        RemovalPlan plan = scanner.planRemoval(view, scan);
+
+        // The canopy is planned after the logs are gone, as the cleanup does
+        ArrayVoxelView felled = new ArrayVoxelView(0, 0, 0, size, sizeY, size);
+        buildTree(felled, centre, shape);
+        felled.setType(centre, 1, centre, Material.AIR);
+        for (int i = 0; i < plan.size(); i++) {
+            long key = plan.getKey(i);
+            felled.setType(BlockKeys.x(key), BlockKeys.y(key), BlockKeys.z(key), Material.AIR);
+        }
+        RemovalPlan leafPlan = scanner.planLeafRemoval(felled, scan);
+
+        TreeType treeType = shape.treeType();
+        Random random = new Random(1);
+        long planNanos = time(() -> scanner.planRemoval(view, scanner.scan(view, worldId, origin, MAX_DISTANCE)));
+        long orderNanos = time(plan::inRemovalOrder);
+        long leafNanos = time(() -> scanner.planLeafRemoval(felled, scan));
+        long naturalNanos = time(() -> naturalDrops(treeType, plan, leafPlan, random));
+        long fastNanos = time(() -> fastDrops(treeType, plan, leafPlan, random));
+
+        System.out.printf("%-10s %6d %6d | %10d %10d %10d | %12d %12d | %9d %9d%n",
+                shape.name(), plan.size(), leafPlan.size(), planNanos, orderNanos, leafNanos, naturalNanos, fastNanos,
+                naturalDrops(treeType, plan, leafPlan, random), fastDrops(treeType, plan, leafPlan, random));
+    }
+
+    /**
+     * Work out the drops of every block on its own, as breaking each block naturally does
+     * @return The number of item entities spawned
+     */
+    private static int naturalDrops(TreeType treeType, RemovalPlan logs, RemovalPlan leaves, Random random) {
+        // Every log spawns its own item
+        int entities = logs.size();
+        Material[] items = leafItems(treeType);
+        for (int i = 0; i < leaves.size(); i++) {
+            DropCollector drops = new DropCollector();
+            LeafLoot.roll(treeType, 1, null, drops, random);
+            for (Material item : items) {
+                if (drops.getCount(item) > 0) {
+                    entities++;
+                }
+            }
+        }
+        return entities;
+    }
+
+    /**
+     * Collect the drops of the whole tree and roll its leaves in bulk, as fast-break does
+     * @return The number of item entities spawned, one per full or partial stack
+     */
+    private static int fastDrops(TreeType treeType, RemovalPlan logs, RemovalPlan leaves, Random random) {
+        DropCollector drops = new DropCollector();
+        for (int i = 0; i < logs.size(); i++) {
+            drops.add(logs.getExpectedType(i), 1);
+        }
+        LeafLoot.roll(treeType, leaves.size(), null, drops, random);
+        int entities = stacks(drops, treeType.getLogMaterial());
+        for (Material item : leafItems(treeType)) {
+            entities += stacks(drops, item);
+        }
+        return entities;
+    }
+
+    /**
+     * Get the items the leaves of a tree type can drop
+     */
+    private static Material[] leafItems(TreeType treeType) {
+        return new Material[]{treeType.getSaplingMaterial(), Material.STICK, Material.APPLE};
+    }
+
+    private static int stacks(DropCollector drops, Material item) {
+        return (drops.getCount(item) + item.getMaxStackSize() - 1) / item.getMaxStackSize();
+    }
+
+    /**
+     * Build a tree with a straight trunk, diagonal branches and a canopy on a dirt floor.
+     * A 2x2 trunk grows from the centre towards positive x and z
+     */
+    private static void buildTree(ArrayVoxelView view, int centre, Shape shape) {
+        Material log = shape.treeType().getLogMaterial();
+        Material leaves = shape.treeType().getLeavesMaterial();
+        int radius = shape.radius();
+        for (int x = view.getMinX(); x <= view.getMaxX(); x++) {
+            for (int z = view.getMinZ(); z <= view.getMaxZ(); z++) {
+                view.setType(x, 0, z, Material.DIRT);
+            }
+        }
+        int top = shape.height();
+        int halfHeight = Math.max(1, radius / shape.flatness());
+        for (int dy = -halfHeight; dy <= halfHeight; dy++) {
+            for (int dx = -radius; dx <= radius + 1; dx++) {
+                for (int dz = -radius; dz <= radius + 1; dz++) {
+                    int y = dy * shape.flatness();
+                    if (dx * dx + y * y + dz * dz <= radius * radius + 1) {
+                        view.setType(centre + dx, top + dy, centre + dz, leaves);
+                    }
+                }
+            }
+        }
+        int width = shape.wide() ? 2 : 1;
+        for (int y = 1; y <= shape.height(); y++) {
+            for (int dx = 0; dx < width; dx++) {
+                for (int dz = 0; dz < width; dz++) {
+                    view.setType(centre + dx, y, centre + dz, log);
+                }
+            }
+        }
+        int far = width - 1;
+        for (int level = 0; level < shape.branches(); level++) {
+            int y = shape.height() / 2 + level * 3;
+            for (int step = 1; step <= 2 + level; step++) {
+                view.setType(centre + far + step, y + step, centre + far + step, log);
+                view.setType(centre - step, y + step, centre + far + step, log);
+                view.setType(centre + far + step, y + step, centre - step, log);
+                view.setType(centre - step, y + step, centre - step, log);
+            }
+        }
+    }
+
+    /**
+     * Time a piece of work after warming it up
+     * @return The average time of one run in nanoseconds
+     */
+    private static long time(Runnable work) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            work.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            work.run();
+        }
+        return (System.nanoTime() - start) / MEASURED_ROUNDS;
+    }
+}
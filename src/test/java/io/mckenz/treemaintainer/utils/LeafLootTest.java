@@ -0,0 +1,157 @@
+package io.mckenz.treemaintainer.utils;
+
+import io.mckenz.treemaintainer.models.TreeType;
+
+import org.bukkit.Material;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that rolling leaf loot in bulk gives the same distribution as rolling it leaf by leaf.
+ * Every check uses a fixed seed and allows five standard errors, so the tests are repeatable
+ * and only fail on a real difference.
+ */
+class LeafLootTest {
+
+    // The vanilla leaf loot tables, written out separately from LeafLoot on purpose
+    private static final double[] SAPLING = {0.05, 0.0625, 0.083333336, 0.1};
+    private static final double[] JUNGLE_SAPLING = {0.025, 0.027777778, 0.03125, 0.041666668, 0.1};
+    private static final double[] STICK = {0.02, 0.022222223, 0.025, 0.033333335, 0.1};
+    private static final double[] APPLE = {0.005, 0.0055555557, 0.00625, 0.008333334, 0.025};
+
+    private static final int LEAVES = 150;
+    private static final int RUNS = 4000;
+
+    @Test
+    void binomialHandlesEdgeCases() {
+        Random random = new Random(1);
+        assertEquals(0, LeafLoot.binomial(random, 0, 0.5));
+        assertEquals(0, LeafLoot.binomial(random, 100, 0));
+        assertEquals(100, LeafLoot.binomial(random, 100, 1));
+        for (int i = 0; i < 1000; i++) {
+            int successes = LeafLoot.binomial(random, 10, 0.3);
+            assertTrue(successes >= 0 && successes <= 10);
+        }
+    }
+
+    @Test
+    void binomialMatchesMeanAndVariance() {
+        Random random = new Random(2);
+        int trials = 200;
+        int runs = 20000;
+        for (double chance : new double[]{0.005, 0.02, 0.1, 0.5, 0.75}) {
+            Stats stats = new Stats();
+            for (int i = 0; i < runs; i++) {
+                stats.add(LeafLoot.binomial(random, trials, chance));
+            }
+            double mean = trials * chance;
+            double variance = trials * chance * (1 - chance);
+            assertEquals(mean, stats.mean(), 5 * Math.sqrt(variance / runs), "mean at chance " + chance);
+            assertEquals(variance, stats.variance(), 0.1 * variance, "variance at chance " + chance);
+        }
+    }
+
+    @Test
+    void rollMatchesPerLeafRolling() {
+        Random random = new Random(3);
+        for (TreeType treeType : new TreeType[]{TreeType.OAK, TreeType.JUNGLE, TreeType.MANGROVE, TreeType.CHERRY}) {
+            for (int fortune = 0; fortune <= 4; fortune++) {
+                Stats[] bulk = {new Stats(), new Stats(), new Stats()};
+                Stats[] perLeaf = {new Stats(), new Stats(), new Stats()};
+                for (int run = 0; run < RUNS; run++) {
+                    DropCollector drops = new DropCollector();
+                    LeafLoot.roll(treeType, LEAVES, fortune, false, drops, random);
+                    bulk[0].add(drops.getCount(treeType.getSaplingMaterial()));
+                    bulk[1].add(drops.getCount(Material.STICK));
+                    bulk[2].add(drops.getCount(Material.APPLE));
+
+                    int[] loot = rollPerLeaf(treeType, fortune, random);
+                    for (int item = 0; item < loot.length; item++) {
+                        perLeaf[item].add(loot[item]);
+                    }
+                }
+
+                String[] items = {"saplings", "sticks", "apples"};
+                for (int item = 0; item < items.length; item++) {
+                    String label = items[item] + " of " + treeType.getConfigName() + " with fortune " + fortune;
+                    double error = Math.sqrt((bulk[item].variance() + perLeaf[item].variance()) / RUNS);
+                    assertEquals(perLeaf[item].mean(), bulk[item].mean(), 5 * error + 1e-9, "mean " + label);
+                    if (perLeaf[item].variance() > 0.5) {
+                        assertEquals(perLeaf[item].variance(), bulk[item].variance(), 0.15 * perLeaf[item].variance(), "variance " + label);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void dropsSelfGivesOnlyTheLeaves() {
+        DropCollector drops = new DropCollector();
+        LeafLoot.roll(TreeType.OAK, LEAVES, 3, true, drops, new Random(4));
+        assertEquals(LEAVES, drops.getCount(Material.OAK_LEAVES));
+        assertEquals(LEAVES, drops.getItemCount());
+    }
+
+    @Test
+    void mangroveDropsNoPropagules() {
+        DropCollector drops = new DropCollector();
+        LeafLoot.roll(TreeType.MANGROVE, 10000, 0, false, drops, new Random(5));
+        assertEquals(0, drops.getCount(Material.MANGROVE_PROPAGULE));
+        assertTrue(drops.getCount(Material.STICK) > 0);
+    }
+
+    /**
+     * Roll the loot of every leaf on its own, the way the vanilla loot tables do
+     * @return The number of saplings, sticks and apples
+     */
+    private static int[] rollPerLeaf(TreeType treeType, int fortune, Random random) {
+        int[] loot = new int[3];
+        for (int leaf = 0; leaf < LEAVES; leaf++) {
+            if (treeType != TreeType.MANGROVE) {
+                double[] saplings = treeType == TreeType.JUNGLE ? JUNGLE_SAPLING : SAPLING;
+                if (random.nextDouble() < chance(saplings, fortune)) {
+                    loot[0]++;
+                }
+            }
+            if (random.nextDouble() < chance(STICK, fortune)) {
+                loot[1] += 1 + random.nextInt(2);
+            }
+            if ((treeType == TreeType.OAK || treeType == TreeType.DARK_OAK) && random.nextDouble() < chance(APPLE, fortune)) {
+                loot[2]++;
+            }
+        }
+        return loot;
+    }
+
+    private static double chance(double[] chances, int fortune) {
+        return chances[Math.min(fortune, chances.length - 1)];
+    }
+
+    /**
+     * Running mean and variance of a sample
+     */
+    private static final class Stats {
+        private long count;
+        private double sum;
+        private double sumOfSquares;
+
+        private void add(double value) {
+            count++;
+            sum += value;
+            sumOfSquares += value * value;
+        }
+
+        private double mean() {
+            return sum / count;
+        }
+
+        private double variance() {
+            double mean = mean();
+            return sumOfSquares / count - mean * mean;
+        }
+    }
+}